@@ -0,0 +1,103 @@
+package nets.labs.lab1;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+// One simulated second of a segment with `peers` nodes, each sending a heartbeat per second, on a fake clock.
+// wheel: PeerTable touched on every heartbeat and expired every 100 ms tick.
+// scan: the previous MCast scheme, containsKey + put of the millisecond time and a full scan every second.
+// A fifth of a percent of the nodes leave and are replaced every second, so both sides expire and admit peers.
+// Run with -prof gc to compare allocation as well.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PeerExpiryBenchmark {
+    private static final long SECOND_NANOS = TimeUnit.SECONDS.toNanos(1);
+    private static final long TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(3);
+    private static final long TICK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    private static final int WHEEL_SLOTS = 64;
+    private static final int CHURN_PER_MILLE = 2;
+
+    @Param({"1000", "5000", "20000"})
+    public int peers;
+
+    private String[] addresses;
+    private int firstLive;
+    private PeerTable<String> wheel;
+    private Map<String, Long> scan;
+    private long nowNanos;
+
+    @Setup(Level.Trial)
+    public void start() {
+        // Retired addresses come back as new nodes once the churn wraps around
+        addresses = new String[peers * 8];
+        for (int i = 0; i < addresses.length; i++) {
+            addresses[i] = "10." + (i >>> 16 & 0xFF) + "." + (i >>> 8 & 0xFF) + "." + (i & 0xFF);
+        }
+        wheel = new PeerTable<>(TIMEOUT_NANOS, TICK_NANOS, WHEEL_SLOTS, 0);
+        scan = new ConcurrentHashMap<>();
+        firstLive = 0;
+        nowNanos = 0;
+    }
+
+    @Benchmark
+    public void wheel(Blackhole blackhole) {
+        churn();
+        long secondStart = nowNanos;
+        long nextTick = secondStart + TICK_NANOS;
+        for (int i = 0; i < peers; i++) {
+            // Heartbeats are spread over the second
+            long at = secondStart + SECOND_NANOS * i / peers;
+            if (at >= nextTick) {
+                wheel.expire(at, blackhole::consume);
+                nextTick += TICK_NANOS;
+            }
+            blackhole.consume(wheel.touch(addresses[wrap(firstLive + i)], at));
+        }
+        nowNanos = secondStart + SECOND_NANOS;
+        wheel.expire(nowNanos, blackhole::consume);
+    }
+
+    @Benchmark
+    public void scan(Blackhole blackhole) {
+        churn();
+        long secondStart = nowNanos;
+        for (int i = 0; i < peers; i++) {
+            long at = secondStart + SECOND_NANOS * i / peers;
+            String address = addresses[wrap(firstLive + i)];
+            boolean known = scan.containsKey(address);
+            scan.put(address, TimeUnit.NANOSECONDS.toMillis(at));
+            blackhole.consume(known);
+        }
+        nowNanos = secondStart + SECOND_NANOS;
+        long now = TimeUnit.NANOSECONDS.toMillis(nowNanos);
+        long timeoutMillis = TimeUnit.NANOSECONDS.toMillis(TIMEOUT_NANOS);
+        scan.forEach((address, lastTime) -> {
+            if (now - lastTime > timeoutMillis) {
+                scan.remove(address);
+                blackhole.consume(address);
+            }
+        });
+    }
+
+    // Retires the oldest nodes; the window of live addresses slides onto the same number of new ones
+    private void churn() {
+        firstLive = wrap(firstLive + Math.max(1, peers * CHURN_PER_MILLE / 1000));
+    }
+
+    private int wrap(int index) {
+        return index % addresses.length;
+    }
+}
@@ -0,0 +1,44 @@
+package nets.labs.lab2.server;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.net.ServerSocket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.stream.Stream;
+
+// Temp files and ports shared by the benchmark fixtures
+class BenchmarkFiles {
+    static File createTempDirectory(String prefix) throws IOException {
+        return Files.createTempDirectory(prefix).toFile();
+    }
+
+    static File createRandomFile(long size) throws IOException {
+        File file = File.createTempFile("jmh-source-", ".bin");
+        byte[] block = new byte[1024 * 1024];
+        Random random = new Random(1);
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            for (long written = 0; written < size; written += block.length) {
+                random.nextBytes(block);
+                raf.write(block, 0, (int) Math.min(block.length, size - written));
+            }
+        }
+        return file;
+    }
+
+    static void deleteRecursively(File root) throws IOException {
+        try (Stream<Path> paths = Files.walk(root.toPath())) {
+            paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    // The servers take a fixed port, so borrow one the OS considers free
+    static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package nets.labs.lab2.server;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+
+// The three ways the client moves a file into a socket: InputStream/OutputStream with a heap buffer,
+// FileChannel.read + SocketChannel.write with a direct buffer, and FileChannel.transferTo (sendfile).
+// A loopback peer drains the socket as fast as it can. transferTo ignores bufferBytes.
+// Score in files/s of FILE_BYTES.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class CopyBenchmark {
+    static final int FILE_BYTES = 16 * 1024 * 1024;
+
+    @Param({"8192", "65536", "1048576"})
+    public int bufferBytes;
+
+    private File source;
+    private ServerSocketChannel listener;
+    private SocketChannel sender;
+    private SocketChannel receiver;
+    private Thread drain;
+    private OutputStream senderStream;
+    private byte[] heapBuffer;
+    private ByteBuffer directBuffer;
+
+    @Setup(Level.Trial)
+    public void start() throws IOException {
+        source = BenchmarkFiles.createRandomFile(FILE_BYTES);
+        listener = ServerSocketChannel.open().bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        sender = SocketChannel.open(listener.getLocalAddress());
+        receiver = listener.accept();
+        senderStream = sender.socket().getOutputStream();
+        heapBuffer = new byte[bufferBytes];
+        directBuffer = ByteBuffer.allocateDirect(bufferBytes);
+
+        drain = new Thread(() -> {
+            ByteBuffer sink = ByteBuffer.allocateDirect(Constants.MAX_ADAPTIVE_BUFFER_SIZE);
+            try {
+                while (receiver.read(sink.clear()) != -1) {
+                    // Discard
+                }
+            } catch (IOException ignored) {
+                // Closed by stop()
+            }
+        });
+        drain.setDaemon(true);
+        drain.start();
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() throws IOException, InterruptedException {
+        sender.close();
+        drain.join();
+        receiver.close();
+        listener.close();
+        source.delete();
+    }
+
+    @Benchmark
+    public long stream() throws IOException {
+        long copied = 0;
+        try (InputStream input = new FileInputStream(source)) {
+            int read;
+            while ((read = input.read(heapBuffer)) != -1) {
+                senderStream.write(heapBuffer, 0, read);
+                copied += read;
+            }
+        }
+        return copied;
+    }
+
+    @Benchmark
+    public long channel() throws IOException {
+        long copied = 0;
+        try (FileChannel file = FileChannel.open(source.toPath(), StandardOpenOption.READ)) {
+            while (file.read(directBuffer.clear()) != -1) {
+                directBuffer.flip();
+                while (directBuffer.hasRemaining()) {
+                    copied += sender.write(directBuffer);
+                }
+            }
+        }
+        return copied;
+    }
+
+    @Benchmark
+    public long transferTo() throws IOException {
+        long copied = 0;
+        try (FileChannel file = FileChannel.open(source.toPath(), StandardOpenOption.READ)) {
+            long size = file.size();
+            while (copied < size) {
+                copied += file.transferTo(copied, size - copied, sender);
+            }
+        }
+        return copied;
+    }
+}
@@ -0,0 +1,77 @@
+package nets.labs.lab2.server;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Per-upload name checks. getCanonicalPath resolves every existing path component with the filesystem,
+// so it is measured on its own next to the full validation and the storage lookup that performs it.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class FileValidatorBenchmark {
+    private static final long PAYLOAD_SIZE = 1L << 30;
+
+    @Param({"report.txt", "projects/2024/q3/report.txt"})
+    public String fileName;
+
+    @Param({"0", "2"})
+    public int shardDepth;
+
+    private File root;
+    private File targetFile;
+    private UploadStorage storage;
+
+    @Setup(Level.Trial)
+    public void start() throws IOException {
+        root = BenchmarkFiles.createTempDirectory("jmh-validator-");
+        storage = new UploadStorage(ServerConfig.builder()
+                .storageRoots(List.of(root.getPath()))
+                .shardDepth(shardDepth)
+                .build());
+        // Steady state of a busy server: the shard and name directories already exist
+        storage.resolve(fileName).getParentFile().mkdirs();
+        targetFile = new File(root, fileName);
+        targetFile.getParentFile().mkdirs();
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() throws IOException {
+        BenchmarkFiles.deleteRecursively(root);
+    }
+
+    @Benchmark
+    public String canonicalPath() throws IOException {
+        return targetFile.getCanonicalPath();
+    }
+
+    @Benchmark
+    public void validateFileName() throws IOException {
+        FileValidator.validateFileName(root, targetFile, fileName);
+    }
+
+    @Benchmark
+    public File resolve() throws IOException {
+        return storage.resolve(fileName);
+    }
+
+    // The arithmetic checks every header goes through, for scale
+    @Benchmark
+    public void headerChecks() throws IOException {
+        FileValidator.validateFileNameLength(fileName.length());
+        FileValidator.validateRange(PAYLOAD_SIZE, 0, PAYLOAD_SIZE);
+        FileValidator.validateFileSize(PAYLOAD_SIZE, PAYLOAD_SIZE);
+    }
+}
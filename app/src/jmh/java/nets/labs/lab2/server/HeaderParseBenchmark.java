@@ -0,0 +1,81 @@
+package nets.labs.lab2.server;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+// Upload headers decoded from memory by UploadHeader.read, the parser ClientHandler.handleUpload uses on the socket:
+// a plain v1 header, and a REQUEST_UPLOAD with SHA-256 and progress options
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class HeaderParseBenchmark {
+    @Param({"12", "255"})
+    public int fileNameLength;
+
+    private byte[] plainHeader;
+    private byte[] extendedHeader;
+
+    @Setup(Level.Trial)
+    public void start() throws IOException {
+        String fileName = "f".repeat(fileNameLength - 4) + ".bin";
+        byte[] fileNameBytes = fileName.getBytes(StandardCharsets.UTF_8);
+
+        ByteArrayOutputStream plain = new ByteArrayOutputStream();
+        DataOutputStream output = new DataOutputStream(plain);
+        output.writeInt(fileNameBytes.length);
+        output.write(fileNameBytes);
+        output.writeLong(1L << 30);
+        plainHeader = plain.toByteArray();
+
+        ByteArrayOutputStream extended = new ByteArrayOutputStream();
+        output = new DataOutputStream(extended);
+        output.writeInt(Constants.PROTOCOL_MAGIC);
+        output.writeByte(Constants.REQUEST_UPLOAD);
+        output.writeInt(fileNameBytes.length);
+        output.write(fileNameBytes);
+        output.writeLong(1L << 30);
+        output.writeByte(2);
+        output.writeByte(Constants.OPTION_CHECKSUM);
+        output.writeByte(ChecksumType.SHA256.getId());
+        output.writeByte(Constants.OPTION_PROGRESS);
+        output.writeByte(1);
+        extendedHeader = extended.toByteArray();
+    }
+
+    @Benchmark
+    public void plain(Blackhole blackhole) throws IOException {
+        parse(new DataInputStream(new ByteArrayInputStream(plainHeader)), blackhole);
+    }
+
+    @Benchmark
+    public void extended(Blackhole blackhole) throws IOException {
+        parse(new DataInputStream(new ByteArrayInputStream(extendedHeader)), blackhole);
+    }
+
+    // The leading int is dispatched as in ClientHandler.run; everything after it is the shared parser
+    private static void parse(DataInputStream input, Blackhole blackhole) throws IOException {
+        int header = input.readInt();
+        if (header != Constants.PROTOCOL_MAGIC) {
+            blackhole.consume(UploadHeader.read(input, header, false));
+            return;
+        }
+        if (input.readByte() != Constants.REQUEST_UPLOAD) throw new IOException("Unexpected request type");
+        blackhole.consume(UploadHeader.read(input, input.readInt(), true));
+    }
+}
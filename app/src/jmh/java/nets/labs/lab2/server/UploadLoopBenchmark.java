@@ -0,0 +1,78 @@
+package nets.labs.lab2.server;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Whole plain uploads through ClientHandler's receive loop over loopback. chunkBytes is the size the
+// adaptive receive buffer starts at, so it matters most for the first reads and for senders that never fill it.
+// Score in uploads/s; multiply by PAYLOAD_BYTES for MB/s.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class UploadLoopBenchmark {
+    static final int PAYLOAD_BYTES = 16 * 1024 * 1024;
+
+    @Param({"8192", "65536", "262144", "1048576"})
+    public int chunkBytes;
+
+    private File root;
+    private int port;
+    private UploadServer server;
+    private final byte[] block = new byte[1024 * 1024];
+
+    @Setup(Level.Trial)
+    public void start() throws IOException {
+        new Random(1).nextBytes(block);
+        root = BenchmarkFiles.createTempDirectory("jmh-uploads-");
+        port = BenchmarkFiles.freePort();
+        server = ServerConfig.builder()
+                .storageRoots(List.of(root.getPath()))
+                .socketTuning(SocketTuning.builder().chunkBytes(chunkBytes).build())
+                .printSpeed(false)
+                .build()
+                .createServer();
+        server.start(port);
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() throws IOException {
+        server.stop();
+        BenchmarkFiles.deleteRecursively(root);
+    }
+
+    @Benchmark
+    public void upload() throws IOException {
+        try (Socket socket = new Socket("localhost", port);
+            DataOutputStream output = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), Constants.BUFFER_SIZE))) {
+            byte[] fileNameBytes = "jmh-upload.bin".getBytes(StandardCharsets.UTF_8);
+            output.writeInt(fileNameBytes.length);
+            output.write(fileNameBytes);
+            output.writeLong(PAYLOAD_BYTES);
+            for (int sent = 0; sent < PAYLOAD_BYTES; sent += block.length) {
+                output.write(block, 0, Math.min(block.length, PAYLOAD_BYTES - sent));
+            }
+            output.flush();
+
+            int response = socket.getInputStream().read();
+            if (response != Constants.RESPONSE_SUCCESS) throw new IOException("Upload failed: " + response);
+        }
+    }
+}
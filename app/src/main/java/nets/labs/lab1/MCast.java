@@ -5,18 +5,21 @@ import lombok.Getter;
 
 import java.io.IOException;
 import java.net.*;
-import java.util.Map;
 import java.util.Scanner;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 @Getter
 public class MCast {
     private static final int BUFFER_SIZE = 1024;
     private static final int HEARTBEAT_INTERVAL_MS = 1000;
     private static final int PEER_TIMEOUT_MS = 3000;
+    // Expiry resolution of the peer timer wheel; 64 slots of 100 ms cover the timeout in one turn
+    private static final int PEER_WHEEL_TICK_MS = 100;
+    private static final int PEER_WHEEL_SLOTS = 64;
     private static final byte[] HEARTBEAT_MSG = new byte[]{1};
 
-    private static final Map<String, Long> peers = new ConcurrentHashMap<>();
+    private static final PeerTable<String> peers = new PeerTable<>(TimeUnit.MILLISECONDS.toNanos(PEER_TIMEOUT_MS),
+            TimeUnit.MILLISECONDS.toNanos(PEER_WHEEL_TICK_MS), PEER_WHEEL_SLOTS, System.nanoTime());
     private static final Object printLock = new Object();
     private static volatile boolean running = true;
 
@@ -72,10 +75,7 @@ public class MCast {
                         socket.receive(pkgRecv);
                         String senderAddr = pkgRecv.getAddress().getHostAddress();
 
-                        boolean isNew = peers.containsKey(senderAddr);
-                        peers.put(senderAddr, System.currentTimeMillis());
-
-                        if (!isNew) {
+                        if (peers.touch(senderAddr, System.nanoTime())) {
                             synchronized (printLock) {
                                 System.out.println(GREEN + JOIN + " Новый узел: " + senderAddr + RESET);
                                 printStatus();
@@ -111,14 +111,10 @@ public class MCast {
             while (running) { // heartbeat
                 try {
                     socket.send(pkgSend);
-                    long now = System.currentTimeMillis();
-                    peers.forEach((addr, lastTime) -> {
-                        if (now - lastTime > PEER_TIMEOUT_MS) {
-                            peers.remove(addr);
-                            synchronized (printLock) {
-                                System.out.println(RED + LEAVE + " Таймаут узла: " + addr + RESET);
-                                printStatus();
-                            }
+                    peers.expire(System.nanoTime(), addr -> {
+                        synchronized (printLock) {
+                            System.out.println(RED + LEAVE + " Таймаут узла: " + addr + RESET);
+                            printStatus();
                         }
                     });
                     Thread.sleep(HEARTBEAT_INTERVAL_MS);
@@ -150,7 +146,7 @@ public class MCast {
             if (peers.isEmpty()) {
                 System.out.println("  📭 Никто не подключён.");
             } else {
-                peers.keySet().forEach(addr -> System.out.println("  🌐 " + addr));
+                peers.addresses().forEach(addr -> System.out.println("  🌐 " + addr));
             }
             System.out.println();
         }
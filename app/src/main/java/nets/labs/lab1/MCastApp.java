@@ -1,8 +1,17 @@
 package nets.labs.lab1;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Scanner;
+
 public class MCastApp {
     public static void main(String[] args) {
         try {
+            // Several "addr port iface" triplets are served together on one selector thread
+            if (args.length > 3 && args.length % 3 == 0) {
+                runMonitor(args);
+                return;
+            }
             MCast mcast = MCast.builder()
                     .mcastAddrStr(args[0])
                     .port(Integer.parseInt(args[1]))
@@ -13,4 +22,23 @@ public class MCastApp {
             System.err.println("Ошибка запуска: " + e.getMessage());
         }
     }
+
+    private static void runMonitor(String[] args) throws Exception {
+        List<MCastGroup> groups = new ArrayList<>();
+        for (int i = 0; i < args.length; i += 3) {
+            groups.add(MCastGroup.of(args[i], Integer.parseInt(args[i + 1]), args[i + 2]));
+        }
+
+        try (MCastMonitor monitor = new MCastMonitor(groups, PeerListener.console())) {
+            monitor.start();
+            Scanner scanner = new Scanner(System.in);
+            System.out.println("\033[33mВведите 'exit' для выхода:\033[0m");
+            while (scanner.hasNextLine()) {
+                String line = scanner.nextLine().trim().toLowerCase();
+                if (line.equals("exit") || line.equals("quit")) break;
+                System.out.println("\033[33m❗ Неизвестная команда. Введите 'exit'.\033[0m");
+            }
+            System.out.println("\n\033[33m🚪 Завершение работы...\033[0m");
+        }
+    }
 }
@@ -0,0 +1,39 @@
+package nets.labs.lab1;
+
+import lombok.Value;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.NetworkInterface;
+import java.net.UnknownHostException;
+
+// One multicast group on one port, joined on one interface
+@Value
+public class MCastGroup {
+    InetAddress address;
+    int port;
+    NetworkInterface networkInterface;
+
+    public static MCastGroup of(String mcastAddrStr, int port, String interfaceName) throws IOException {
+        if (port <= 0 || port > 65535) throw new IllegalArgumentException("Неверный порт: " + port);
+
+        InetAddress address;
+        try {
+            address = InetAddress.getByName(mcastAddrStr);
+        } catch (UnknownHostException e) {
+            throw new IllegalArgumentException("Неверный multicast-адрес: " + mcastAddrStr, e);
+        }
+        if (!address.isMulticastAddress()) throw new IllegalArgumentException("Адрес не multicast: " + mcastAddrStr);
+
+        NetworkInterface netIf = NetworkInterface.getByName(interfaceName);
+        if (netIf == null) throw new IOException("Интерфейс '" + interfaceName + "' не найден.");
+        if (!netIf.supportsMulticast())
+            throw new IOException("Интерфейс '" + interfaceName + "' не поддерживает мультикаст.");
+        return new MCastGroup(address, port, netIf);
+    }
+
+    @Override
+    public String toString() {
+        return address.getHostAddress() + ":" + port + " через '" + networkInterface.getName() + "'";
+    }
+}
@@ -0,0 +1,215 @@
+package nets.labs.lab1;
+
+import java.io.IOException;
+import java.net.Inet6Address;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Heartbeats and peer tracking for many groups, ports and interfaces on one selector thread.
+// Each group gets a non-blocking DatagramChannel joined on its interface; datagrams land in one reused direct
+// buffer and peers are keyed by the sender InetAddress, so a steady-state heartbeat allocates nothing but the
+// sender address the channel hands back. Heartbeats and expiry run off deadlines that bound each select.
+public class MCastMonitor implements AutoCloseable {
+    private static final int BUFFER_SIZE = 1024;
+    private static final long HEARTBEAT_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(1000);
+    private static final long PEER_TIMEOUT_NANOS = TimeUnit.MILLISECONDS.toNanos(3000);
+    private static final long PEER_WHEEL_TICK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    private static final int PEER_WHEEL_SLOTS = 64;
+    // Bounds one channel's turn so a flooded group cannot starve the others or the heartbeats
+    private static final int MAX_READS_PER_WAKEUP = 64;
+
+    private static final String RED = "\033[31m";
+    private static final String GREEN = "\033[32m";
+    private static final String RESET = "\033[0m";
+    private static final String ERROR = "💥";
+    private static final String JOIN = "✅";
+
+    private final List<MCastGroup> groups;
+    private final PeerListener listener;
+    private final List<Membership> memberships = new ArrayList<>();
+    private final ByteBuffer receiveBuffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private final ByteBuffer heartbeat = ByteBuffer.allocateDirect(1).put(0, (byte) 1);
+    private Selector selector;
+    private Thread thread;
+    private volatile boolean running;
+
+    public MCastMonitor(List<MCastGroup> groups, PeerListener listener) {
+        if (groups.isEmpty()) throw new IllegalArgumentException("Не задано ни одной группы");
+        this.groups = List.copyOf(groups);
+        this.listener = listener;
+    }
+
+    public synchronized void start() throws IOException {
+        if (thread != null) throw new IllegalStateException("Монитор уже запущен");
+        selector = Selector.open();
+        long now = System.nanoTime();
+        try {
+            for (int i = 0; i < groups.size(); i++) {
+                // Spread the first heartbeats over one interval instead of sending them in a burst
+                long firstHeartbeat = now + HEARTBEAT_INTERVAL_NANOS * i / groups.size();
+                memberships.add(join(groups.get(i), now, firstHeartbeat));
+            }
+        } catch (IOException e) {
+            closeChannels();
+            throw e;
+        }
+
+        running = true;
+        thread = new Thread(this::run, "mcast-selector");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private Membership join(MCastGroup group, long now, long firstHeartbeat) throws IOException {
+        InetAddress address = group.getAddress();
+        DatagramChannel channel = DatagramChannel.open(address instanceof Inet6Address
+                ? StandardProtocolFamily.INET6 : StandardProtocolFamily.INET);
+        try {
+            channel.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+            channel.setOption(StandardSocketOptions.IP_MULTICAST_IF, group.getNetworkInterface());
+            channel.setOption(StandardSocketOptions.IP_MULTICAST_LOOP, true);
+            try {
+                // Bound to the group address the kernel only delivers this group, even when others share the port
+                channel.bind(new InetSocketAddress(address, group.getPort()));
+            } catch (IOException e) {
+                channel.bind(new InetSocketAddress(group.getPort()));
+            }
+            channel.join(address, group.getNetworkInterface());
+            channel.configureBlocking(false);
+
+            Membership membership = new Membership(group, channel, now, firstHeartbeat);
+            channel.register(selector, SelectionKey.OP_READ, membership);
+            System.out.println(GREEN + JOIN + " Подключён к multicast группе: " + group + RESET);
+            return membership;
+        } catch (IOException e) {
+            channel.close();
+            throw new IOException("Группа " + group + ": " + e.getMessage(), e);
+        }
+    }
+
+    private void run() {
+        try {
+            while (running) {
+                long now = System.nanoTime();
+                long nextDeadline = Long.MAX_VALUE;
+                for (Membership membership : memberships) {
+                    if (now - membership.nextHeartbeatNanos >= 0) {
+                        sendHeartbeat(membership);
+                        // Catch up from now rather than firing the missed beats back to back
+                        membership.nextHeartbeatNanos = Math.max(membership.nextHeartbeatNanos + HEARTBEAT_INTERVAL_NANOS,
+                                now);
+                    }
+                    if (now - membership.nextExpiryNanos >= 0) {
+                        membership.peers.expire(now, peer -> listener.onLeave(membership.group, peer));
+                        membership.nextExpiryNanos = now + PEER_WHEEL_TICK_NANOS;
+                    }
+                    nextDeadline = Math.min(nextDeadline,
+                            Math.min(membership.nextHeartbeatNanos, membership.nextExpiryNanos));
+                }
+
+                // Rounded up, so a deadline under a millisecond away waits for it instead of spinning on selectNow;
+                // select(0) would block forever, so only a deadline already due falls back to selectNow
+                long remainingNanos = nextDeadline - System.nanoTime();
+                long timeoutMillis = remainingNanos <= 0 ? 0 : (remainingNanos + 999_999) / 1_000_000;
+                if (timeoutMillis > 0) {
+                    selector.select(this::onReadable, timeoutMillis);
+                } else {
+                    selector.selectNow(this::onReadable);
+                }
+            }
+        } catch (IOException | ClosedSelectorException e) {
+            if (running) System.err.println(RED + ERROR + " Ошибка селектора: " + e.getMessage() + RESET);
+        } finally {
+            closeChannels();
+        }
+    }
+
+    private void sendHeartbeat(Membership membership) {
+        try {
+            membership.channel.send(heartbeat.rewind(), membership.target);
+        } catch (IOException e) {
+            if (running) {
+                System.err.println(RED + ERROR + " Ошибка отправки в " + membership.group + ": " + e.getMessage() + RESET);
+            }
+        }
+    }
+
+    private void onReadable(SelectionKey key) {
+        Membership membership = (Membership) key.attachment();
+        try {
+            for (int i = 0; i < MAX_READS_PER_WAKEUP; i++) {
+                SocketAddress sender = membership.channel.receive(receiveBuffer.clear());
+                if (sender == null) return;
+                InetAddress peer = ((InetSocketAddress) sender).getAddress();
+                if (membership.peers.touch(peer, System.nanoTime())) listener.onJoin(membership.group, peer);
+            }
+        } catch (IOException e) {
+            if (running) {
+                System.err.println(RED + ERROR + " Ошибка при приёме из " + membership.group + ": " + e.getMessage() + RESET);
+            }
+        }
+    }
+
+    public List<MCastGroup> getGroups() {
+        return groups;
+    }
+
+    @Override
+    public void close() {
+        Thread selectorThread;
+        synchronized (this) {
+            running = false;
+            selectorThread = thread;
+        }
+        if (selectorThread == null) return;
+        selector.wakeup();
+        try {
+            selectorThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void closeChannels() {
+        for (Membership membership : memberships) {
+            try {
+                membership.channel.close();
+            } catch (IOException ignored) {
+            }
+        }
+        memberships.clear();
+        try {
+            selector.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    private static class Membership {
+        private final MCastGroup group;
+        private final DatagramChannel channel;
+        private final InetSocketAddress target;
+        private final PeerTable<InetAddress> peers;
+        private long nextHeartbeatNanos;
+        private long nextExpiryNanos;
+
+        private Membership(MCastGroup group, DatagramChannel channel, long now, long firstHeartbeat) {
+            this.group = group;
+            this.channel = channel;
+            this.target = new InetSocketAddress(group.getAddress(), group.getPort());
+            this.peers = new PeerTable<>(PEER_TIMEOUT_NANOS, PEER_WHEEL_TICK_NANOS, PEER_WHEEL_SLOTS, now);
+            this.nextHeartbeatNanos = firstHeartbeat;
+            this.nextExpiryNanos = now + PEER_WHEEL_TICK_NANOS;
+        }
+    }
+}
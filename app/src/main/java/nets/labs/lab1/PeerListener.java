@@ -0,0 +1,24 @@
+package nets.labs.lab1;
+
+import java.net.InetAddress;
+
+// Membership changes seen by MCastMonitor; called on its selector thread, so implementations must not block
+public interface PeerListener {
+    void onJoin(MCastGroup group, InetAddress peer);
+
+    void onLeave(MCastGroup group, InetAddress peer);
+
+    static PeerListener console() {
+        return new PeerListener() {
+            @Override
+            public void onJoin(MCastGroup group, InetAddress peer) {
+                System.out.println("\033[32m✅ Новый узел: " + peer.getHostAddress() + " в группе " + group + "\033[0m");
+            }
+
+            @Override
+            public void onLeave(MCastGroup group, InetAddress peer) {
+                System.out.println("\033[31m❌ Таймаут узла: " + peer.getHostAddress() + " в группе " + group + "\033[0m");
+            }
+        };
+    }
+}
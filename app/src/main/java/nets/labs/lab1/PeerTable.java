@@ -0,0 +1,148 @@
+package nets.labs.lab1;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Consumer;
+
+// Live peers keyed by address (a String or the InetAddress the receiver already has), expired through a hashed
+// timer wheel on System.nanoTime. A heartbeat only stores its time in the peer; the wheel checks a peer once its
+// deadline slot comes up and either drops it or moves it to the slot of its new deadline. Expiry work per tick
+// is the peers due in that slot, not the whole table.
+// touch may be called from any thread, expire from one thread at a time.
+class PeerTable<K> {
+    private final Map<K, Peer<K>> peers = new ConcurrentHashMap<>();
+    // New peers reach the wheel through here, so only the expiring thread ever touches the slots
+    private final Queue<Peer<K>> arrivals = new ConcurrentLinkedQueue<>();
+    private final Slot<K>[] slots;
+    private final long timeoutNanos;
+    private final long tickNanos;
+    private final long originNanos;
+    private long lastTick;
+
+    // wheelSize is rounded up to a power of two; a timeout longer than the wheel just takes extra rounds
+    PeerTable(long timeoutNanos, long tickNanos, int wheelSize, long nowNanos) {
+        if (timeoutNanos <= 0 || tickNanos <= 0) throw new IllegalArgumentException("Timeout and tick must be positive");
+        int size = Integer.highestOneBit(Math.max(1, wheelSize));
+        if (size < wheelSize) size <<= 1;
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        Slot<K>[] wheel = new Slot[size];
+        for (int i = 0; i < size; i++) {
+            wheel[i] = new Slot<>();
+        }
+        this.slots = wheel;
+        this.timeoutNanos = timeoutNanos;
+        this.tickNanos = tickNanos;
+        this.originNanos = nowNanos;
+    }
+
+    // Records a heartbeat; true when address was not a live peer. Known peers cost one lookup and one volatile write.
+    boolean touch(K address, long nowNanos) {
+        Peer<K> peer = peers.get(address);
+        if (peer != null) {
+            peer.lastSeenNanos = nowNanos;
+            return false;
+        }
+        Peer<K> created = new Peer<>(address, nowNanos, tickOf(nowNanos + timeoutNanos) + 1);
+        Peer<K> raced = peers.putIfAbsent(address, created);
+        if (raced != null) {
+            raced.lastSeenNanos = nowNanos;
+            return false;
+        }
+        arrivals.add(created);
+        return true;
+    }
+
+    // Drops peers silent for the timeout and hands their addresses to onExpired
+    void expire(long nowNanos, Consumer<K> onExpired) {
+        long nowTick = tickOf(nowNanos);
+        Peer<K> arrival;
+        while ((arrival = arrivals.poll()) != null) {
+            // A slot already passed would only come up again after a full turn
+            arrival.deadlineTick = Math.max(arrival.deadlineTick, lastTick + 1);
+            slotOf(arrival.deadlineTick).add(arrival);
+        }
+
+        // After a long pause every slot is due once
+        long ticks = Math.min(nowTick - lastTick, slots.length);
+        for (long tick = nowTick - ticks + 1; tick <= nowTick; tick++) {
+            expireSlot(slotOf(tick), nowTick, nowNanos, onExpired);
+        }
+        lastTick = Math.max(lastTick, nowTick);
+    }
+
+    private void expireSlot(Slot<K> slot, long nowTick, long nowNanos, Consumer<K> onExpired) {
+        int kept = 0;
+        for (int i = 0; i < slot.size; i++) {
+            Peer<K> peer = slot.peers[i];
+            if (peer.deadlineTick <= nowTick) {
+                long lastSeen = peer.lastSeenNanos;
+                if (nowNanos - lastSeen >= timeoutNanos) {
+                    // A heartbeat racing with this removal lands on the dropped entry; the next one rejoins as new
+                    if (peers.remove(peer.address, peer)) onExpired.accept(peer.address);
+                    continue;
+                }
+                peer.deadlineTick = tickOf(lastSeen + timeoutNanos) + 1;
+                Slot<K> next = slotOf(peer.deadlineTick);
+                if (next != slot) {
+                    next.add(peer);
+                    continue;
+                }
+            }
+            slot.peers[kept++] = peer;
+        }
+        for (int i = kept; i < slot.size; i++) {
+            slot.peers[i] = null;
+        }
+        slot.size = kept;
+    }
+
+    boolean isEmpty() {
+        return peers.isEmpty();
+    }
+
+    int size() {
+        return peers.size();
+    }
+
+    Set<K> addresses() {
+        return Collections.unmodifiableSet(peers.keySet());
+    }
+
+    private long tickOf(long nanos) {
+        return Math.floorDiv(nanos - originNanos, tickNanos);
+    }
+
+    private Slot<K> slotOf(long tick) {
+        return slots[(int) (tick & (slots.length - 1))];
+    }
+
+    private static class Peer<K> {
+        private final K address;
+        private volatile long lastSeenNanos;
+        // Only read and written by the expiring thread once the peer is on the wheel
+        private long deadlineTick;
+
+        private Peer(K address, long lastSeenNanos, long deadlineTick) {
+            this.address = address;
+            this.lastSeenNanos = lastSeenNanos;
+            this.deadlineTick = deadlineTick;
+        }
+    }
+
+    // Growable array reused across turns, so steady-state ticks allocate nothing
+    private static class Slot<K> {
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        private Peer<K>[] peers = new Peer[8];
+        private int size;
+
+        private void add(Peer<K> peer) {
+            if (size == peers.length) peers = Arrays.copyOf(peers, size * 2);
+            peers[size++] = peer;
+        }
+    }
+}
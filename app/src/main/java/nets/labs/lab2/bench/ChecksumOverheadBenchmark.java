@@ -0,0 +1,46 @@
+package nets.labs.lab2.bench;
+
+import nets.labs.lab2.server.ChecksumType;
+import nets.labs.lab2.server.Constants;
+import nets.labs.lab2.server.PayloadDigest;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+// Measures how fast each checksum folds BUFFER_SIZE blocks and how much of one core it costs at a given line rate.
+// Usage: ChecksumOverheadBenchmark [dataMb] [lineRateMBps]
+public class ChecksumOverheadBenchmark {
+    private static final int WARMUP_ROUNDS = 3;
+
+    public static void main(String[] args) {
+        long dataMb = args.length > 0 ? Long.parseLong(args[0]) : 1024;
+        double lineRateMBps = args.length > 1 ? Double.parseDouble(args[1]) : 1250.0; // 10 Gbit/s
+
+        byte[] block = new byte[Constants.BUFFER_SIZE];
+        ThreadLocalRandom.current().nextBytes(block);
+        long blocks = dataMb * 1024 * 1024 / block.length;
+
+        System.out.printf("%-8s %12s %16s%n", "checksum", "MB/s", "core @ line rate");
+        for (ChecksumType type : ChecksumType.values()) {
+            for (int i = 0; i < WARMUP_ROUNDS; i++) {
+                run(type, block, blocks / 10);
+            }
+
+            long start = System.nanoTime();
+            byte[] digest = run(type, block, blocks);
+            double seconds = (System.nanoTime() - start) / 1e9;
+            double mbps = blocks * block.length / seconds / Constants.BYTES_TO_MEGABYTES_DIVISOR;
+
+            // Digest length is printed so the JIT cannot drop the loop as dead code
+            System.out.printf("%-8s %12.2f %15.1f%% (%d-byte digest)%n",
+                    type, mbps, lineRateMBps / mbps * 100, digest.length);
+        }
+    }
+
+    private static byte[] run(ChecksumType type, byte[] block, long blocks) {
+        PayloadDigest digest = type.newDigest();
+        for (long i = 0; i < blocks; i++) {
+            digest.update(block, 0, block.length);
+        }
+        return digest.finish();
+    }
+}
@@ -0,0 +1,115 @@
+package nets.labs.lab2.bench;
+
+import nets.labs.lab2.server.Constants;
+import nets.labs.lab2.server.DurabilityMode;
+import nets.labs.lab2.server.ServerConfig;
+import nets.labs.lab2.server.UploadServer;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+// Upload latency and throughput of every DurabilityMode with concurrent clients writing to uploads/.
+// Results depend entirely on the disk under uploads/; run it on the filesystem the server will use.
+// Usage: DurabilityBenchmark [fileSizeKb] [clients] [uploadsPerClient] [port]
+public class DurabilityBenchmark {
+    public static void main(String[] args) throws Exception {
+        int fileSizeKb = args.length > 0 ? Integer.parseInt(args[0]) : 256;
+        int clients = args.length > 1 ? Integer.parseInt(args[1]) : 16;
+        int uploadsPerClient = args.length > 2 ? Integer.parseInt(args[2]) : 32;
+        int port = args.length > 3 ? Integer.parseInt(args[3]) : 8080;
+
+        byte[] payload = new byte[fileSizeKb * 1024];
+        ThreadLocalRandom.current().nextBytes(payload);
+
+        StringBuilder report = new StringBuilder();
+        report.append(String.format("%-12s %10s %10s %10s %10s %12s%n",
+                "mode", "p50 ms", "p99 ms", "max ms", "uploads/s", "MB/s"));
+        for (DurabilityMode mode : DurabilityMode.values()) {
+            ServerConfig config = ServerConfig.builder()
+                    .durability(mode)
+                    .durabilitySyncIntervalBytes(Math.max(1, payload.length / 4))
+                    .printSpeed(false)
+                    .build();
+            UploadServer server = config.createServer();
+            server.start(port);
+            try {
+                // Warm up the JIT and create the files once so every mode overwrites the same set
+                run(port, payload, clients, 1);
+                long start = System.nanoTime();
+                double[] latencies = run(port, payload, clients, uploadsPerClient);
+                double seconds = (System.nanoTime() - start) / 1e9;
+
+                Arrays.sort(latencies);
+                report.append(String.format("%-12s %10.2f %10.2f %10.2f %10.1f %12.2f%n", mode,
+                        percentile(latencies, 0.50), percentile(latencies, 0.99), latencies[latencies.length - 1],
+                        latencies.length / seconds,
+                        (double) latencies.length * payload.length / seconds / Constants.BYTES_TO_MEGABYTES_DIVISOR));
+            } finally {
+                server.stop();
+            }
+        }
+        System.out.println();
+        System.out.print(report);
+    }
+
+    // Returns the latency of every upload in milliseconds
+    private static double[] run(int port, byte[] payload, int clients, int uploadsPerClient) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(clients);
+        try {
+            List<Future<double[]>> results = new ArrayList<>();
+            for (int client = 0; client < clients; client++) {
+                String fileName = "durability-bench-" + client + ".bin";
+                results.add(executor.submit(() -> {
+                    double[] latencies = new double[uploadsPerClient];
+                    for (int i = 0; i < uploadsPerClient; i++) {
+                        long start = System.nanoTime();
+                        upload(port, fileName, payload);
+                        latencies[i] = (System.nanoTime() - start) / 1e6;
+                    }
+                    return latencies;
+                }));
+            }
+
+            double[] all = new double[clients * uploadsPerClient];
+            int position = 0;
+            for (Future<double[]> result : results) {
+                double[] latencies = result.get();
+                System.arraycopy(latencies, 0, all, position, latencies.length);
+                position += latencies.length;
+            }
+            return all;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static void upload(int port, String fileName, byte[] payload) throws IOException {
+        try (Socket socket = new Socket("localhost", port);
+            DataOutputStream output = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), Constants.BUFFER_SIZE))) {
+            byte[] fileNameBytes = fileName.getBytes(StandardCharsets.UTF_8);
+            output.writeInt(fileNameBytes.length);
+            output.write(fileNameBytes);
+            output.writeLong(payload.length);
+            output.write(payload);
+            output.flush();
+
+            int response = socket.getInputStream().read();
+            if (response != Constants.RESPONSE_SUCCESS) throw new IOException("Upload of '" + fileName + "' failed: " + response);
+        }
+    }
+
+    private static double percentile(double[] sorted, double fraction) {
+        int index = (int) Math.ceil(fraction * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+    }
+}
@@ -0,0 +1,92 @@
+package nets.labs.lab2.bench;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Log-linear histogram in the style of HdrHistogram: values below 128 are exact, larger ones fall into
+// 64 linear sub-buckets per power of two, so any recorded value is reported within 1/64 of itself.
+// Memory is fixed at a few thousand counters regardless of the range. Not thread-safe: record into one
+// histogram per thread and merge them afterwards.
+public class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 7;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int SUB_BUCKET_HALF = SUB_BUCKET_COUNT / 2;
+    private static final int BUCKET_COUNT = SUB_BUCKET_COUNT + (Long.SIZE - SUB_BUCKET_BITS) * SUB_BUCKET_HALF;
+
+    private final long[] counts = new long[BUCKET_COUNT];
+    private long totalCount;
+    private long sum;
+    private long min = Long.MAX_VALUE;
+    private long max;
+
+    public void record(long value) {
+        if (value < 0) throw new IllegalArgumentException("Negative value " + value);
+        counts[indexOf(value)]++;
+        totalCount++;
+        sum += value;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+    }
+
+    public void merge(LatencyHistogram other) {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            counts[i] += other.counts[i];
+        }
+        totalCount += other.totalCount;
+        sum += other.sum;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+    }
+
+    // Smallest value that at least fraction of the recordings are less than or equal to, e.g. 0.999 for p99.9
+    public long percentile(double fraction) {
+        if (totalCount == 0) return 0;
+        long rank = Math.max(1, (long) Math.ceil(fraction * totalCount));
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += counts[i];
+            if (seen >= rank) return Math.min(highestValueAt(i), max);
+        }
+        return max;
+    }
+
+    public long getCount() {
+        return totalCount;
+    }
+
+    public long getMin() {
+        return totalCount == 0 ? 0 : min;
+    }
+
+    public long getMax() {
+        return max;
+    }
+
+    public double getMean() {
+        return totalCount == 0 ? 0 : (double) sum / totalCount;
+    }
+
+    // Non-empty buckets as {highest value in bucket, count} pairs; enough to rebuild the distribution offline
+    public List<long[]> buckets() {
+        List<long[]> buckets = new ArrayList<>();
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            if (counts[i] > 0) buckets.add(new long[] {highestValueAt(i), counts[i]});
+        }
+        return buckets;
+    }
+
+    // 0..127 map to themselves; above that the top 7 significant bits pick the bucket
+    private static int indexOf(long value) {
+        if (value < SUB_BUCKET_COUNT) return (int) value;
+        int shift = Long.SIZE - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        int subBucket = (int) (value >>> shift) - SUB_BUCKET_HALF;
+        return SUB_BUCKET_COUNT + (shift - 1) * SUB_BUCKET_HALF + subBucket;
+    }
+
+    private static long highestValueAt(int index) {
+        if (index < SUB_BUCKET_COUNT) return index;
+        int shift = (index - SUB_BUCKET_COUNT) / SUB_BUCKET_HALF + 1;
+        long subBucket = (index - SUB_BUCKET_COUNT) % SUB_BUCKET_HALF + SUB_BUCKET_HALF;
+        return ((subBucket + 1) << shift) - 1;
+    }
+}
@@ -0,0 +1,269 @@
+package nets.labs.lab2.bench;
+
+import com.google.gson.GsonBuilder;
+import nets.labs.lab2.server.Constants;
+import nets.labs.lab2.server.ServerConfig;
+import nets.labs.lab2.server.ServerEngine;
+import nets.labs.lab2.server.UploadServer;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+// Drives the upload server with concurrent simulated clients and reports latency percentiles and aggregate throughput.
+// target is a port to start a loopback server on, or host:port of a running one. ramp staggers client start:
+//   none            all clients start at once
+//   linear:5000     client starts spread evenly over 5 s
+//   step:4:1000     4 more clients every second
+// sizes is described in SizeDistribution; engine is the ServerEngine of the loopback server. The report is printed
+// and, when a file is given, also written as JSON so runs can be compared; "-" prints the JSON instead.
+// Usage: LoadGenerator [clients] [uploadsPerClient] [sizes] [ramp] [target] [report.json] [engine]
+public class LoadGenerator {
+    private static final double[] PERCENTILES = {0.50, 0.90, 0.99, 0.999};
+    private static final String[] PERCENTILE_NAMES = {"p50", "p90", "p99", "p99.9"};
+    // Every run uses the same seeds, so two runs with the same arguments upload the same sizes
+    private static final long SEED = 23210L;
+
+    public static void main(String[] args) throws Exception {
+        int clients = args.length > 0 ? Integer.parseInt(args[0]) : 16;
+        int uploadsPerClient = args.length > 1 ? Integer.parseInt(args[1]) : 32;
+        SizeDistribution sizes = SizeDistribution.parse(args.length > 2 ? args[2] : "lognormal:256k:1.5");
+        String ramp = args.length > 3 ? args[3] : "none";
+        String target = args.length > 4 ? args[4] : "8080";
+        String reportPath = args.length > 5 && !args[5].isEmpty() ? args[5] : null;
+        ServerEngine engine = args.length > 6 ? ServerEngine.valueOf(args[6]) : ServerEngine.THREAD_PER_CONNECTION;
+
+        int separator = target.lastIndexOf(':');
+        String host = separator < 0 ? "localhost" : target.substring(0, separator);
+        int port = Integer.parseInt(target.substring(separator + 1));
+        boolean loopback = separator < 0;
+
+        UploadServer server = null;
+        if (loopback) {
+            server = ServerConfig.builder().engine(engine).printSpeed(false).build().createServer();
+            server.start(port);
+        }
+        try {
+            Report report = run(host, port, clients, uploadsPerClient, sizes, ramp);
+            report.target = host + ":" + port + (loopback ? " (loopback " + engine + " server)" : "");
+            System.out.println();
+            System.out.print(report.format());
+            if ("-".equals(reportPath)) {
+                System.out.println(report.toJson());
+            } else if (reportPath != null) {
+                try (Writer writer = new FileWriter(reportPath, StandardCharsets.UTF_8)) {
+                    writer.write(report.toJson());
+                }
+                System.out.println("Report written to " + reportPath);
+            }
+        } finally {
+            if (server != null) server.stop();
+        }
+    }
+
+    private static Report run(String host, int port, int clients, int uploadsPerClient, SizeDistribution sizes,
+            String ramp) throws Exception {
+        byte[] payload = new byte[sizes.payloadBytes()];
+        new Random(SEED).nextBytes(payload);
+
+        ExecutorService executor = Executors.newFixedThreadPool(clients);
+        long start = System.nanoTime();
+        try {
+            List<Future<ClientResult>> futures = new ArrayList<>();
+            for (int client = 0; client < clients; client++) {
+                int id = client;
+                long delayMillis = startDelayMillis(ramp, id, clients);
+                futures.add(executor.submit(() -> {
+                    Thread.sleep(delayMillis);
+                    return runClient(host, port, id, uploadsPerClient, sizes, payload);
+                }));
+            }
+
+            Report report = new Report();
+            report.clients = clients;
+            report.uploadsPerClient = uploadsPerClient;
+            report.sizes = sizes.toString();
+            report.ramp = ramp;
+            for (Future<ClientResult> future : futures) {
+                ClientResult result = future.get();
+                report.latencyMicros.merge(result.latencyMicros);
+                report.throughputKBps.merge(result.throughputKBps);
+                report.bytes += result.bytes;
+                report.errors += result.errors;
+                if (report.firstError == null) report.firstError = result.firstError;
+            }
+            report.seconds = (System.nanoTime() - start) / 1e9;
+            return report;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static long startDelayMillis(String ramp, int client, int clients) {
+        String[] parts = ramp.split(":");
+        switch (parts[0]) {
+            case "none":
+                return 0;
+            case "linear":
+                return Long.parseLong(parts[1]) * client / clients;
+            case "step":
+                return client / Integer.parseInt(parts[1]) * Long.parseLong(parts[2]);
+            default:
+                throw new IllegalArgumentException("Unknown ramp profile '" + ramp + "'");
+        }
+    }
+
+    // Each client uploads under its own name, overwriting it, so a long run does not fill the disk
+    private static ClientResult runClient(String host, int port, int client, int uploads, SizeDistribution sizes,
+            byte[] payload) {
+        Random random = new Random(SEED + client);
+        ClientResult result = new ClientResult();
+        for (int i = 0; i < uploads; i++) {
+            File file = sizes.nextFile(random);
+            long size = file == null ? sizes.nextSize(random) : file.length();
+            String fileName = "load-" + client + (file == null ? ".bin" : "-" + file.getName());
+            long start = System.nanoTime();
+            try {
+                upload(host, port, fileName, size, file, payload);
+            } catch (IOException e) {
+                result.errors++;
+                if (result.firstError == null) result.firstError = e.getMessage();
+                continue;
+            }
+            long nanos = Math.max(1, System.nanoTime() - start);
+            result.latencyMicros.record(nanos / 1000);
+            result.throughputKBps.record((long) (size / 1024.0 / (nanos / 1e9)));
+            result.bytes += size;
+        }
+        return result;
+    }
+
+    // Plain upload request; synthetic data repeats the shared payload up to size
+    private static void upload(String host, int port, String fileName, long size, File file, byte[] payload) throws IOException {
+        try (Socket socket = new Socket(host, port);
+            DataOutputStream output = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), Constants.BUFFER_SIZE))) {
+            byte[] fileNameBytes = fileName.getBytes(StandardCharsets.UTF_8);
+            output.writeInt(fileNameBytes.length);
+            output.write(fileNameBytes);
+            output.writeLong(size);
+            if (file != null) {
+                try (InputStream input = new FileInputStream(file)) {
+                    input.transferTo(output);
+                }
+            } else {
+                for (long sent = 0; sent < size; sent += payload.length) {
+                    output.write(payload, 0, (int) Math.min(payload.length, size - sent));
+                }
+            }
+            output.flush();
+
+            int response = socket.getInputStream().read();
+            if (response != Constants.RESPONSE_SUCCESS) throw new IOException("Upload of '" + fileName + "' failed: " + response);
+        }
+    }
+
+    private static class ClientResult {
+        private final LatencyHistogram latencyMicros = new LatencyHistogram();
+        private final LatencyHistogram throughputKBps = new LatencyHistogram();
+        private long bytes;
+        private long errors;
+        private String firstError;
+    }
+
+    private static class Report {
+        private final transient LatencyHistogram latencyMicros = new LatencyHistogram();
+        private final transient LatencyHistogram throughputKBps = new LatencyHistogram();
+        private final String timestamp = Instant.now().toString();
+        private String target;
+        private int clients;
+        private int uploadsPerClient;
+        private String sizes;
+        private String ramp;
+        private long bytes;
+        private long errors;
+        private String firstError;
+        private double seconds;
+
+        private String format() {
+            double megabytes = bytes / Constants.BYTES_TO_MEGABYTES_DIVISOR;
+            StringBuilder text = new StringBuilder();
+            text.append(String.format("%-16s %s%n", "target", target));
+            text.append(String.format("%-16s %d x %d uploads, sizes %s, ramp %s%n", "clients", clients, uploadsPerClient, sizes, ramp));
+            text.append(String.format("%-16s %d ok, %d failed%s%n", "transfers", latencyMicros.getCount(), errors,
+                    firstError == null ? "" : " (" + firstError + ")"));
+            text.append(String.format("%-16s %.2f MB in %.2f s, %.2f MB/s%n", "aggregate", megabytes, seconds, megabytes / seconds));
+
+            text.append(String.format("%-16s", ""));
+            for (String name : PERCENTILE_NAMES) {
+                text.append(String.format(" %10s", name));
+            }
+            text.append(String.format(" %10s %10s%n", "max", "mean"));
+            text.append(String.format("%-16s", "latency ms"));
+            for (double percentile : PERCENTILES) {
+                text.append(String.format(" %10.2f", latencyMicros.percentile(percentile) / 1e3));
+            }
+            text.append(String.format(" %10.2f %10.2f%n", latencyMicros.getMax() / 1e3, latencyMicros.getMean() / 1e3));
+            // The slow end is what matters for throughput, so its percentiles count from the bottom
+            text.append(String.format("%-16s", "transfer MB/s"));
+            for (double percentile : PERCENTILES) {
+                text.append(String.format(" %10.2f", throughputKBps.percentile(1 - percentile) / 1024.0));
+            }
+            text.append(String.format(" %10s %10.2f%n", "", throughputKBps.getMean() / 1024.0));
+            return text.toString();
+        }
+
+        private String toJson() {
+            JsonReport json = new JsonReport();
+            json.run = this;
+            json.aggregateMBps = bytes / Constants.BYTES_TO_MEGABYTES_DIVISOR / seconds;
+            json.latencyMillis = new JsonHistogram(latencyMicros, 1e3, false);
+            json.transferMBps = new JsonHistogram(throughputKBps, 1024.0, true);
+            return new GsonBuilder().setPrettyPrinting().create().toJson(json);
+        }
+    }
+
+    private static class JsonReport {
+        private Report run;
+        private double aggregateMBps;
+        private JsonHistogram latencyMillis;
+        private JsonHistogram transferMBps;
+    }
+
+    private static class JsonHistogram {
+        private final long count;
+        private final double p50;
+        private final double p90;
+        private final double p99;
+        private final double p999;
+        private final double max;
+        private final double mean;
+        // {highest value in bucket, count} in the histogram's raw unit, to merge or re-plot runs later
+        private final List<long[]> buckets;
+
+        // fromBottom counts percentiles from the low end, so p99 of throughput is the rate 99% of transfers beat
+        private JsonHistogram(LatencyHistogram histogram, double divisor, boolean fromBottom) {
+            count = histogram.getCount();
+            p50 = histogram.percentile(0.50) / divisor;
+            p90 = histogram.percentile(fromBottom ? 1 - 0.90 : 0.90) / divisor;
+            p99 = histogram.percentile(fromBottom ? 1 - 0.99 : 0.99) / divisor;
+            p999 = histogram.percentile(fromBottom ? 1 - 0.999 : 0.999) / divisor;
+            max = histogram.getMax() / divisor;
+            mean = histogram.getMean() / divisor;
+            buckets = histogram.buckets();
+        }
+    }
+}
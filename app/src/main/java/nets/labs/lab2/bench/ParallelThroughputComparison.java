@@ -0,0 +1,66 @@
+package nets.labs.lab2.bench;
+
+import nets.labs.lab2.client.Client;
+import nets.labs.lab2.client.TransferMode;
+import nets.labs.lab2.server.Constants;
+import nets.labs.lab2.server.Server;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.concurrent.ThreadLocalRandom;
+
+// Compares single-stream and parallel chunked uploads over loopback.
+// Usage: ParallelThroughputComparison [fileSizeMb] [port]
+public class ParallelThroughputComparison {
+    private static final int[] STREAM_COUNTS = {1, 2, 4, 8};
+
+    public static void main(String[] args) throws Exception {
+        long fileSizeMb = args.length > 0 ? Long.parseLong(args[0]) : 256;
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : 8080;
+
+        File file = createRandomFile(fileSizeMb * 1024 * 1024);
+        Server server = new Server();
+        server.start(port);
+        try {
+            // Warm up the JIT and the page cache before measuring
+            Client.sendFile(file.getPath(), "localhost", port, TransferMode.STREAM);
+
+            double singleStream = measure(() -> Client.sendFile(file.getPath(), "localhost", port, TransferMode.STREAM), file.length());
+            StringBuilder report = new StringBuilder();
+            report.append(String.format("%-16s %10.2f MB/s%n", "single stream", singleStream));
+            for (int streams : STREAM_COUNTS) {
+                double parallel = measure(() -> Client.sendFileParallel(file.getPath(), "localhost", port, streams), file.length());
+                report.append(String.format("%-16s %10.2f MB/s (x%.2f)%n", streams + " streams", parallel, parallel / singleStream));
+            }
+            System.out.println();
+            System.out.print(report);
+        } finally {
+            server.stop();
+            file.delete();
+        }
+    }
+
+    private static double measure(Upload upload, long bytes) throws IOException {
+        long start = System.nanoTime();
+        upload.run();
+        double seconds = (System.nanoTime() - start) / 1e9;
+        return bytes / seconds / Constants.BYTES_TO_MEGABYTES_DIVISOR;
+    }
+
+    private static File createRandomFile(long size) throws IOException {
+        File file = File.createTempFile("lab2-bench-", ".bin");
+        byte[] block = new byte[1024 * 1024];
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            for (long written = 0; written < size; written += block.length) {
+                ThreadLocalRandom.current().nextBytes(block);
+                raf.write(block, 0, (int) Math.min(block.length, size - written));
+            }
+        }
+        return file;
+    }
+
+    private interface Upload {
+        void run() throws IOException;
+    }
+}
@@ -0,0 +1,113 @@
+package nets.labs.lab2.bench;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+// Picks the size of each synthetic upload, or the real file to send when given a directory.
+//   fixed:1m              every upload is 1 MB
+//   uniform:64k:4m        sizes spread evenly between the bounds
+//   lognormal:256k:1.5    median 256 KB, sigma 1.5: mostly small files with a long tail of large ones
+//   dir:path              files under path, picked at random
+class SizeDistribution {
+    private final String spec;
+    private final String kind;
+    private final long first;
+    private final long second;
+    private final double sigma;
+    private final List<File> files;
+
+    private SizeDistribution(String spec, String kind, long first, long second, double sigma, List<File> files) {
+        this.spec = spec;
+        this.kind = kind;
+        this.first = first;
+        this.second = second;
+        this.sigma = sigma;
+        this.files = files;
+    }
+
+    static SizeDistribution parse(String spec) {
+        String[] parts = spec.split(":", 2);
+        String kind = parts[0].toLowerCase(Locale.ROOT);
+        String[] values = parts.length > 1 ? parts[1].split(":") : new String[0];
+        switch (kind) {
+            case "fixed":
+                requireValues(spec, values, 1);
+                return new SizeDistribution(spec, kind, parseSize(values[0]), 0, 0, null);
+            case "uniform":
+                requireValues(spec, values, 2);
+                long low = parseSize(values[0]);
+                long high = parseSize(values[1]);
+                if (high < low) throw new IllegalArgumentException("Upper bound below lower bound in '" + spec + "'");
+                return new SizeDistribution(spec, kind, low, high, 0, null);
+            case "lognormal":
+                requireValues(spec, values, 2);
+                return new SizeDistribution(spec, kind, parseSize(values[0]), 0, Double.parseDouble(values[1]), null);
+            case "dir":
+                if (parts.length < 2) throw new IllegalArgumentException("Missing directory in '" + spec + "'");
+                List<File> files = new ArrayList<>();
+                collectFiles(new File(parts[1]), files);
+                if (files.isEmpty()) throw new IllegalArgumentException("No files under '" + parts[1] + "'");
+                return new SizeDistribution(spec, kind, 0, 0, 0, files);
+            default:
+                throw new IllegalArgumentException("Unknown size distribution '" + spec + "'");
+        }
+    }
+
+    // Real file for the next upload, or null when uploads are synthetic
+    File nextFile(Random random) {
+        return files == null ? null : files.get(random.nextInt(files.size()));
+    }
+
+    long nextSize(Random random) {
+        switch (kind) {
+            case "uniform":
+                return first + (long) (random.nextDouble() * (second - first + 1));
+            case "lognormal":
+                return Math.max(0, Math.round(first * Math.exp(sigma * random.nextGaussian())));
+            default:
+                return first;
+        }
+    }
+
+    // Largest synthetic upload worth keeping in one shared payload buffer; bigger ones repeat it
+    int payloadBytes() {
+        long largest = "uniform".equals(kind) ? second : first;
+        return (int) Math.min(Math.max(largest, 1), 1024 * 1024);
+    }
+
+    @Override
+    public String toString() {
+        return spec;
+    }
+
+    // "512", "64k", "4m", "1g"
+    static long parseSize(String value) {
+        String size = value.trim().toLowerCase(Locale.ROOT);
+        long multiplier = 1;
+        char unit = size.isEmpty() ? ' ' : size.charAt(size.length() - 1);
+        if (unit == 'k') multiplier = 1024;
+        else if (unit == 'm') multiplier = 1024 * 1024;
+        else if (unit == 'g') multiplier = 1024L * 1024 * 1024;
+        if (multiplier > 1) size = size.substring(0, size.length() - 1);
+        return Long.parseLong(size) * multiplier;
+    }
+
+    private static void requireValues(String spec, String[] values, int count) {
+        if (values.length != count) throw new IllegalArgumentException("Expected " + count + " value(s) in '" + spec + "'");
+    }
+
+    private static void collectFiles(File file, List<File> files) {
+        if (file.isFile()) {
+            files.add(file);
+            return;
+        }
+        File[] children = file.listFiles();
+        if (children == null) return;
+        for (File child : children) {
+            collectFiles(child, files);
+        }
+    }
+}
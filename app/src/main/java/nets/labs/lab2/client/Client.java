@@ -1,11 +1,134 @@
 package nets.labs.lab2.client;
 
+import nets.labs.lab2.server.ChecksumType;
+import nets.labs.lab2.server.CompressionType;
+import nets.labs.lab2.server.Constants;
+import nets.labs.lab2.server.PayloadDigest;
+import nets.labs.lab2.server.SocketTuning;
+
 import java.io.*;
 import java.net.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SocketChannel;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Consumer;
+import java.util.zip.Deflater;
 
 public class Client {
+    // Socket options and chunk size of every connection opened by the clients of this package
+    private static volatile SocketTuning socketTuning = SocketTuning.defaults();
+
+    public static void setSocketTuning(SocketTuning tuning) {
+        socketTuning = tuning;
+    }
+
+    static SocketTuning getSocketTuning() {
+        return socketTuning;
+    }
+
     public static void sendFile(String filePath, String host, int port) throws IOException {
+        sendFile(filePath, host, port, TransferMode.STREAM);
+    }
+
+    public static void sendFile(String filePath, String host, int port, TransferMode mode) throws IOException {
+        File file = checkFile(filePath);
+
+        long start = System.nanoTime();
+        try {
+            switch (mode) {
+                case STREAM -> sendStream(file, host, port);
+                case ZERO_COPY -> sendZeroCopy(file, host, port);
+                case PARALLEL -> sendParallel(file, host, port, Constants.DEFAULT_PARALLEL_STREAMS);
+                case PIPELINED -> reportResponse(file.getName(), new PipelinedSender(file, Constants.DEFAULT_READ_AHEAD_DEPTH).send(host, port));
+            }
+            double seconds = Math.max(1e-9, (System.nanoTime() - start) / 1e9);
+            System.out.printf("File '%s' (%s): %d bytes in %.2f s, %.2f MB/s%n", file.getName(), mode, file.length(),
+                    seconds, file.length() / seconds / Constants.BYTES_TO_MEGABYTES_DIVISOR);
+        } catch (SocketException e) {
+            if ("Connection reset".equals(e.getMessage())) {
+                System.out.println("File transfer failed: Connection was reset by server");
+            } else {
+                throw e;
+            }
+        }
+    }
+
+    public static void sendFileParallel(String filePath, String host, int port, int streamCount) throws IOException {
+        File file = checkFile(filePath);
+        sendParallel(file, host, port, streamCount);
+    }
+
+    public static void sendFilePipelined(String filePath, String host, int port, int readAheadDepth) throws IOException {
+        File file = checkFile(filePath);
+        reportResponse(file.getName(), new PipelinedSender(file, readAheadDepth).send(host, port));
+    }
+
+    // Sends the payload followed by a digest computed while reading the file
+    public static void sendFileVerified(String filePath, String host, int port, ChecksumType checksumType) throws IOException {
+        sendWithOptions(checkFile(filePath), host, port, checksumType, CompressionType.NONE, null);
+    }
+
+    // Deflates the payload block by block; blocks that do not shrink enough go raw
+    public static void sendFileCompressed(String filePath, String host, int port) throws IOException {
+        sendWithOptions(checkFile(filePath), host, port, ChecksumType.NONE, CompressionType.DEFLATE, null);
+    }
+
+    public static void sendFileCompressed(String filePath, String host, int port, ChecksumType checksumType) throws IOException {
+        sendWithOptions(checkFile(filePath), host, port, checksumType, CompressionType.DEFLATE, null);
+    }
+
+    // The server reports progress about once per second while receiving; listener runs on a separate thread
+    public static void sendFileWithProgress(String filePath, String host, int port, Consumer<UploadProgress> listener) throws IOException {
+        sendWithOptions(checkFile(filePath), host, port, ChecksumType.NONE, CompressionType.NONE, listener);
+    }
+
+    public static void sendFileWithProgress(String filePath, String host, int port, ChecksumType checksumType,
+            CompressionType compressionType, Consumer<UploadProgress> listener) throws IOException {
+        sendWithOptions(checkFile(filePath), host, port, checksumType, compressionType, listener);
+    }
+
+    public static void sendFileResumable(String filePath, String host, int port) throws IOException {
+        File file = checkFile(filePath);
+        // Same file, size and modification time give the same id, so a rerun continues the old upload
+        String identity = file.getAbsolutePath() + ":" + file.length() + ":" + file.lastModified();
+        long transferId = UUID.nameUUIDFromBytes(identity.getBytes(StandardCharsets.UTF_8)).getMostSignificantBits();
+        sendFileResumable(file, host, port, transferId);
+    }
+
+    public static void sendFileResumable(File file, String host, int port, long transferId) throws IOException {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                int response = sendResumable(file, host, port, transferId);
+                if (response != -1 || attempt == Constants.RESUME_MAX_ATTEMPTS) {
+                    reportResponse(file.getName(), response);
+                    return;
+                }
+                System.out.println("File '" + file.getName() + "': server closed connection, reconnecting");
+            } catch (IOException e) {
+                if (attempt == Constants.RESUME_MAX_ATTEMPTS) throw e;
+                System.out.println("File '" + file.getName() + "' transfer interrupted: " + e.getMessage() + ", reconnecting");
+            }
+
+            try {
+                Thread.sleep(Constants.RESUME_RETRY_DELAY_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Resumable transfer of '" + file.getName() + "' interrupted");
+            }
+        }
+    }
+
+    private static File checkFile(String filePath) throws FileNotFoundException {
         File file = new File(filePath);
 
         System.out.println("Attempting to send file: \"" + filePath + "\"");
@@ -17,30 +140,62 @@ public class Client {
         if (!file.exists()) throw new FileNotFoundException("File does not exist: " + filePath);
         if (!file.isFile()) throw new FileNotFoundException("Path is not a regular file: " + filePath);
         if (!file.canRead()) throw new FileNotFoundException("File is not readable: " + filePath);
+        return file;
+    }
 
-        try (Socket socket = new Socket(host, port);
-            DataOutputStream output = new DataOutputStream(socket.getOutputStream());
+    private static void sendWithOptions(File file, String host, int port, ChecksumType checksumType,
+            CompressionType compressionType, Consumer<UploadProgress> progressListener) throws IOException {
+        try (Socket socket = socketTuning.connect(host, port).socket();
+            DataOutputStream output = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), socketTuning.getChunkBytes()));
             FileInputStream fis = new FileInputStream(file)) {
 
             String fileName = file.getName();
             byte[] fileNameBytes = fileName.getBytes(StandardCharsets.UTF_8);
-            
+            long startNanos = System.nanoTime();
+
+            output.writeInt(Constants.PROTOCOL_MAGIC);
+            output.writeByte(Constants.REQUEST_UPLOAD);
             output.writeInt(fileNameBytes.length);
             output.write(fileNameBytes);
             output.writeLong(file.length());
+            output.writeByte(progressListener != null ? 3 : 2);
+            output.writeByte(Constants.OPTION_CHECKSUM);
+            output.writeByte(checksumType.getId());
+            output.writeByte(Constants.OPTION_COMPRESSION);
+            output.writeByte(compressionType.getId());
+            if (progressListener != null) {
+                output.writeByte(Constants.OPTION_PROGRESS);
+                output.writeByte(1);
+            }
 
-            byte[] buffer = new byte[8192];
-            int bytesRead;
-            while ((bytesRead = fis.read(buffer)) != -1) {
-                output.write(buffer, 0, bytesRead);
+            InputStream response = progressListener != null
+                    ? new ProgressReceiver(socket.getInputStream(), file.length(), progressListener)
+                    : socket.getInputStream();
+            PayloadDigest digest = checksumType.newDigest();
+            long wireBytes = file.length();
+            if (compressionType == CompressionType.DEFLATE) {
+                wireBytes = sendCompressedBlocks(fis, output, response, digest);
+            } else {
+                byte[] buffer = new byte[socketTuning.getChunkBytes()];
+                int bytesRead;
+                while ((bytesRead = fis.read(buffer)) != -1) {
+                    if (response.available() > 0) break;
+                    digest.update(buffer, 0, bytesRead);
+                    output.write(buffer, 0, bytesRead);
+                }
             }
+            output.write(digest.finish());
             output.flush();
 
-            int response = socket.getInputStream().read();
-            if (response == 1) System.out.println("File '" + fileName + "' transferred successfully");
-            else if (response == 0) System.out.println("File '" + fileName + "' transfer failed (server reported error)");
-            else if (response == -1) System.out.println("File '" + fileName + "' transfer failed: Server closed connection unexpectedly");
-            else System.out.println("File '" + fileName + "' transfer failed: Invalid response from server: " + response);
+            int result = response.read();
+            if (compressionType != CompressionType.NONE && result == Constants.RESPONSE_SUCCESS) {
+                double seconds = Math.max(1e-9, (System.nanoTime() - startNanos) / 1e9);
+                System.out.printf("File '%s': %d bytes sent as %d wire bytes, effective %.2f MB/s, wire %.2f MB/s%n",
+                        fileName, file.length(), wireBytes,
+                        file.length() / seconds / Constants.BYTES_TO_MEGABYTES_DIVISOR,
+                        wireBytes / seconds / Constants.BYTES_TO_MEGABYTES_DIVISOR);
+            }
+            reportResponse(fileName, result);
         } catch (SocketException e) {
             if ("Connection reset".equals(e.getMessage())) {
                 System.out.println("File transfer failed: Connection was reset by server");
@@ -49,4 +204,213 @@ public class Client {
             }
         }
     }
-}
\ No newline at end of file
+
+    // Each block is (type, raw length, wire length, bytes). After a block that does not compress, the next
+    // blocks skip the trial altogether, for twice as many blocks each time, so media files cost little CPU.
+    private static long sendCompressedBlocks(InputStream fis, DataOutputStream output, InputStream response,
+            PayloadDigest digest) throws IOException {
+        Deflater deflater = new Deflater(Constants.COMPRESSION_LEVEL);
+        byte[] raw = new byte[Constants.COMPRESSION_BLOCK_SIZE];
+        byte[] packed = new byte[Constants.COMPRESSION_BLOCK_SIZE];
+        int skipBlocks = 0;
+        int backoff = 1;
+        long wireBytes = 0;
+
+        try {
+            int rawLength;
+            while ((rawLength = fis.readNBytes(raw, 0, raw.length)) > 0) {
+                if (response.available() > 0) break;
+                digest.update(raw, 0, rawLength);
+
+                int packedLength = -1;
+                if (skipBlocks > 0) {
+                    skipBlocks--;
+                } else {
+                    deflater.reset();
+                    deflater.setInput(raw, 0, rawLength);
+                    deflater.finish();
+                    // Only room for a worthwhile result: running out of space means the block is incompressible
+                    int limit = (int) (rawLength * Constants.COMPRESSION_MAX_RATIO);
+                    int length = deflater.deflate(packed, 0, limit);
+                    if (deflater.finished()) {
+                        packedLength = length;
+                        backoff = 1;
+                    } else {
+                        skipBlocks = backoff;
+                        backoff = Math.min(backoff * 2, Constants.COMPRESSION_MAX_SKIP_BLOCKS);
+                    }
+                }
+
+                if (packedLength > 0) {
+                    output.writeByte(Constants.BLOCK_DEFLATE);
+                    output.writeInt(rawLength);
+                    output.writeInt(packedLength);
+                    output.write(packed, 0, packedLength);
+                } else {
+                    output.writeByte(Constants.BLOCK_RAW);
+                    output.writeInt(rawLength);
+                    output.writeInt(rawLength);
+                    output.write(raw, 0, rawLength);
+                }
+                wireBytes += 1 + 2 * Integer.BYTES + (packedLength > 0 ? packedLength : rawLength);
+            }
+        } finally {
+            deflater.end();
+        }
+        return wireBytes;
+    }
+
+    private static void sendStream(File file, String host, int port) throws IOException {
+        try (Socket socket = socketTuning.connect(host, port).socket();
+            DataOutputStream output = new DataOutputStream(socket.getOutputStream());
+            FileInputStream fis = new FileInputStream(file)) {
+
+            String fileName = file.getName();
+            byte[] fileNameBytes = fileName.getBytes(StandardCharsets.UTF_8);
+            
+            output.writeInt(fileNameBytes.length);
+            output.write(fileNameBytes);
+            output.writeLong(file.length());
+
+            InputStream response = socket.getInputStream();
+            byte[] buffer = new byte[socketTuning.getChunkBytes()];
+            int bytesRead;
+            while ((bytesRead = fis.read(buffer)) != -1) {
+                // An answer before the payload is done means the server refused the upload (RESPONSE_BUSY)
+                if (response.available() > 0) break;
+                output.write(buffer, 0, bytesRead);
+            }
+            output.flush();
+
+            reportResponse(fileName, response.read());
+        }
+    }
+
+    private static void sendZeroCopy(File file, String host, int port) throws IOException {
+        try (SocketChannel channel = socketTuning.connect(host, port);
+            FileChannel fileChannel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+
+            String fileName = file.getName();
+            byte[] fileNameBytes = fileName.getBytes(StandardCharsets.UTF_8);
+            long fileSize = fileChannel.size();
+
+            ByteBuffer header = ByteBuffer.allocate(Integer.BYTES + fileNameBytes.length + Long.BYTES);
+            header.putInt(fileNameBytes.length).put(fileNameBytes).putLong(fileSize).flip();
+            writeFully(channel, header);
+
+            // transferTo may move fewer bytes than asked (e.g. 2 GB cap per call on Linux)
+            long position = 0;
+            while (position < fileSize) {
+                position += fileChannel.transferTo(position, fileSize - position, channel);
+            }
+
+            ByteBuffer response = ByteBuffer.allocate(1);
+            int bytesRead = channel.read(response);
+            reportResponse(fileName, bytesRead == -1 ? -1 : response.get(0));
+        }
+    }
+
+    // Splits the file into streamCount ranges, each sent over its own connection
+    private static void sendParallel(File file, String host, int port, int streamCount) throws IOException {
+        String fileName = file.getName();
+        long fileSize = file.length();
+        int streams = (int) Math.max(1, Math.min(Math.min(streamCount, Constants.MAX_PARALLEL_STREAMS), fileSize));
+        long transferId = ThreadLocalRandom.current().nextLong();
+        long rangeSize = fileSize / streams;
+
+        ExecutorService executor = Executors.newFixedThreadPool(streams);
+        try {
+            List<Future<Integer>> responses = new ArrayList<>();
+            for (int i = 0; i < streams; i++) {
+                long offset = i * rangeSize;
+                long length = i == streams - 1 ? fileSize - offset : rangeSize;
+                responses.add(executor.submit(() -> sendRange(file, host, port, transferId, streams, offset, length)));
+            }
+
+            int response = Constants.RESPONSE_SUCCESS;
+            for (Future<Integer> future : responses) {
+                int streamResponse = future.get();
+                if (streamResponse != Constants.RESPONSE_SUCCESS) response = streamResponse;
+            }
+            reportResponse(fileName, response);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Parallel transfer of '" + fileName + "' interrupted");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException ioException) throw ioException;
+            throw new IOException("Parallel transfer of '" + fileName + "' failed", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static int sendRange(File file, String host, int port, long transferId, int streams, long offset, long length) throws IOException {
+        try (SocketChannel channel = socketTuning.connect(host, port);
+            FileChannel fileChannel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+
+            byte[] fileNameBytes = file.getName().getBytes(StandardCharsets.UTF_8);
+            ByteBuffer header = ByteBuffer.allocate(Integer.BYTES + 1 + Long.BYTES + Integer.BYTES + fileNameBytes.length
+                    + Long.BYTES + Integer.BYTES + Long.BYTES + Long.BYTES);
+            header.putInt(Constants.PROTOCOL_MAGIC).put(Constants.REQUEST_CHUNK).putLong(transferId)
+                    .putInt(fileNameBytes.length).put(fileNameBytes).putLong(file.length())
+                    .putInt(streams).putLong(offset).putLong(length).flip();
+            writeFully(channel, header);
+
+            long position = offset;
+            long end = offset + length;
+            while (position < end) {
+                position += fileChannel.transferTo(position, end - position, channel);
+            }
+
+            ByteBuffer response = ByteBuffer.allocate(1);
+            return channel.read(response) == -1 ? -1 : response.get(0);
+        }
+    }
+
+    private static int sendResumable(File file, String host, int port, long transferId) throws IOException {
+        try (SocketChannel channel = socketTuning.connect(host, port);
+            FileChannel fileChannel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+
+            byte[] fileNameBytes = file.getName().getBytes(StandardCharsets.UTF_8);
+            long fileSize = fileChannel.size();
+            ByteBuffer header = ByteBuffer.allocate(Integer.BYTES + 1 + Long.BYTES + Integer.BYTES + fileNameBytes.length + Long.BYTES);
+            header.putInt(Constants.PROTOCOL_MAGIC).put(Constants.REQUEST_RESUME).putLong(transferId)
+                    .putInt(fileNameBytes.length).put(fileNameBytes).putLong(fileSize).flip();
+            writeFully(channel, header);
+
+            ByteBuffer offsetBuffer = ByteBuffer.allocate(Long.BYTES);
+            readFully(channel, offsetBuffer);
+            long offset = offsetBuffer.flip().getLong();
+            if (offset < 0 || offset > fileSize) throw new IOException("Server requested invalid resume offset: " + offset);
+            if (offset > 0) System.out.println("Resuming file '" + file.getName() + "' from offset " + offset);
+
+            long position = offset;
+            while (position < fileSize) {
+                position += fileChannel.transferTo(position, fileSize - position, channel);
+            }
+
+            ByteBuffer response = ByteBuffer.allocate(1);
+            return channel.read(response) == -1 ? -1 : response.get(0);
+        }
+    }
+
+    private static void readFully(SocketChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) == -1) throw new EOFException("Server closed connection unexpectedly");
+        }
+    }
+
+    private static void writeFully(SocketChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private static void reportResponse(String fileName, int response) {
+        if (response == 1) System.out.println("File '" + fileName + "' transferred successfully");
+        else if (response == 0) System.out.println("File '" + fileName + "' transfer failed (server reported error)");
+        else if (response == 2) System.out.println("File '" + fileName + "' transfer rejected: server is busy, try again later");
+        else if (response == -1) System.out.println("File '" + fileName + "' transfer failed: Server closed connection unexpectedly");
+        else System.out.println("File '" + fileName + "' transfer failed: Invalid response from server: " + response);
+    }
+}
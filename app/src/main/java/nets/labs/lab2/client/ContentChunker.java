@@ -0,0 +1,81 @@
+package nets.labs.lab2.client;
+
+import lombok.Value;
+import nets.labs.lab2.server.ChecksumType;
+import nets.labs.lab2.server.Constants;
+import nets.labs.lab2.server.PayloadDigest;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+// Content-defined chunking with a gear rolling hash: boundaries follow the data, not offsets,
+// so an insertion early in a file only changes the chunks around it
+class ContentChunker {
+    private static final long[] GEAR = new long[256];
+    // Boundary tests use the top bits, which depend on the last 64 bytes; a stricter mask before the
+    // average size and a looser one after it pull chunk sizes towards DEDUP_AVG_CHUNK_SIZE
+    private static final int AVG_BITS = Integer.numberOfTrailingZeros(Constants.DEDUP_AVG_CHUNK_SIZE);
+    private static final long MASK_BEFORE_AVG = -1L << (64 - AVG_BITS - 2);
+    private static final long MASK_AFTER_AVG = -1L << (64 - AVG_BITS + 2);
+
+    static {
+        // Fixed seed: every client must cut the same data at the same places
+        Random random = new Random(0x4C32_4443L);
+        for (int i = 0; i < GEAR.length; i++) {
+            GEAR[i] = random.nextLong();
+        }
+    }
+
+    static List<Chunk> split(File file) throws IOException {
+        List<Chunk> chunks = new ArrayList<>();
+        try (FileChannel fileChannel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate((int) Constants.TRANSFER_CHUNK_SIZE);
+            PayloadDigest digest = ChecksumType.SHA256.newDigest();
+            long chunkStart = 0;
+            int chunkLength = 0;
+            long hash = 0;
+
+            while (fileChannel.read(buffer.clear()) != -1) {
+                byte[] data = buffer.array();
+                int end = buffer.position();
+                int digested = 0;
+                for (int i = 0; i < end; i++) {
+                    hash = (hash << 1) + GEAR[data[i] & 0xFF];
+                    chunkLength++;
+                    if (isBoundary(hash, chunkLength)) {
+                        digest.update(data, digested, i + 1 - digested);
+                        digested = i + 1;
+                        chunks.add(new Chunk(chunkStart, chunkLength, digest.finish()));
+                        digest = ChecksumType.SHA256.newDigest();
+                        chunkStart += chunkLength;
+                        chunkLength = 0;
+                        hash = 0;
+                    }
+                }
+                digest.update(data, digested, end - digested);
+            }
+            if (chunkLength > 0) chunks.add(new Chunk(chunkStart, chunkLength, digest.finish()));
+        }
+        return chunks;
+    }
+
+    private static boolean isBoundary(long hash, int chunkLength) {
+        if (chunkLength < Constants.DEDUP_MIN_CHUNK_SIZE) return false;
+        if (chunkLength >= Constants.DEDUP_MAX_CHUNK_SIZE) return true;
+        long mask = chunkLength < Constants.DEDUP_AVG_CHUNK_SIZE ? MASK_BEFORE_AVG : MASK_AFTER_AVG;
+        return (hash & mask) == 0;
+    }
+
+    @Value
+    static class Chunk {
+        long offset;
+        int length;
+        byte[] hash;
+    }
+}
@@ -0,0 +1,84 @@
+package nets.labs.lab2.client;
+
+import nets.labs.lab2.server.Constants;
+
+import java.io.*;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+// Uploads a file as content-defined chunks; chunks the server already stores never cross the wire
+public class DedupClient {
+    public static void sendFile(String filePath, String host, int port) throws IOException {
+        File file = new File(filePath);
+        if (!file.isFile() || !file.canRead()) throw new FileNotFoundException("File is not readable: " + filePath);
+
+        String fileName = file.getName();
+        List<ContentChunker.Chunk> chunks = ContentChunker.split(file);
+        if (chunks.size() > Constants.MAX_DEDUP_CHUNKS) throw new IOException("File has too many chunks: " + chunks.size());
+
+        try (Socket socket = Client.getSocketTuning().connect(host, port).socket();
+            DataOutputStream output = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), Constants.DEDUP_MAX_CHUNK_SIZE));
+            DataInputStream input = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            FileChannel fileChannel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+
+            byte[] fileNameBytes = fileName.getBytes(StandardCharsets.UTF_8);
+            output.writeInt(Constants.PROTOCOL_MAGIC);
+            output.writeByte(Constants.REQUEST_DEDUP);
+            output.writeInt(fileNameBytes.length);
+            output.write(fileNameBytes);
+            output.writeLong(file.length());
+            output.writeInt(chunks.size());
+            for (ContentChunker.Chunk chunk : chunks) {
+                output.writeInt(chunk.getLength());
+                output.write(chunk.getHash());
+            }
+            output.flush();
+
+            // A refusal arrives as a single response byte instead of the missing list
+            int missingCount;
+            input.mark(Integer.BYTES);
+            try {
+                missingCount = input.readInt();
+            } catch (EOFException e) {
+                input.reset();
+                reportResponse(fileName, input.read());
+                return;
+            }
+            if (missingCount < 0 || missingCount > chunks.size()) throw new IOException("Server requested invalid chunk count: " + missingCount);
+
+            long sentBytes = 0;
+            ByteBuffer buffer = ByteBuffer.allocate(Constants.DEDUP_MAX_CHUNK_SIZE);
+            for (int i = 0; i < missingCount; i++) {
+                int index = input.readInt();
+                if (index < 0 || index >= chunks.size()) throw new IOException("Server requested invalid chunk: " + index);
+                ContentChunker.Chunk chunk = chunks.get(index);
+
+                buffer.clear().limit(chunk.getLength());
+                while (buffer.hasRemaining()) {
+                    if (fileChannel.read(buffer, chunk.getOffset() + buffer.position()) == -1) {
+                        throw new IOException("File changed while sending: " + filePath);
+                    }
+                }
+                output.write(buffer.array(), 0, chunk.getLength());
+                sentBytes += chunk.getLength();
+            }
+            output.flush();
+
+            System.out.println("File '" + fileName + "': sent " + missingCount + " of " + chunks.size() + " chunks, "
+                    + sentBytes + " of " + file.length() + " bytes");
+            reportResponse(fileName, input.read());
+        }
+    }
+
+    private static void reportResponse(String fileName, int response) {
+        if (response == 1) System.out.println("File '" + fileName + "' transferred successfully");
+        else if (response == 0) System.out.println("File '" + fileName + "' transfer failed (server reported error)");
+        else if (response == 2) System.out.println("File '" + fileName + "' transfer rejected: server is busy, try again later");
+        else if (response == -1) System.out.println("File '" + fileName + "' transfer failed: Server closed connection unexpectedly");
+        else System.out.println("File '" + fileName + "' transfer failed: Invalid response from server: " + response);
+    }
+}
@@ -0,0 +1,176 @@
+package nets.labs.lab2.client;
+
+import nets.labs.lab2.server.Constants;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+// Fetches uploaded files back; data lands in a .part file that is renamed once complete
+public class DownloadClient {
+    // Continues from whatever an earlier interrupted download left in targetPath + ".part"
+    public static void downloadFile(String fileName, String targetPath, String host, int port) throws IOException {
+        File partFile = new File(targetPath + Constants.DOWNLOAD_PART_SUFFIX);
+        long offset = partFile.isFile() ? partFile.length() : 0;
+        if (offset > 0) System.out.println("Resuming download of '" + fileName + "' from offset " + offset);
+
+        long start = System.nanoTime();
+        try (FileChannel fileChannel = FileChannel.open(partFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            RangeHeader header;
+            try {
+                header = fetchRange(fileName, host, port, offset, Constants.RANGE_TO_END, fileChannel);
+            } catch (RangeRejectedException e) {
+                if (offset == 0) throw e;
+                // The file on the server changed or got shorter: the leftover part is useless
+                System.out.println("Server rejected resume of '" + fileName + "', downloading from the beginning");
+                fileChannel.truncate(0);
+                offset = 0;
+                header = fetchRange(fileName, host, port, 0, Constants.RANGE_TO_END, fileChannel);
+            }
+            if (offset + header.length != header.fileSize) throw new IOException("Server sent a partial range for '" + fileName + "'");
+            fileChannel.truncate(header.fileSize);
+        } catch (IOException e) {
+            // Keep partial data for the next attempt, but do not leave empty leftovers behind
+            if (partFile.length() == 0) partFile.delete();
+            throw e;
+        }
+
+        complete(fileName, partFile, targetPath, start);
+    }
+
+    // Splits the file into streamCount ranges, each fetched over its own connection
+    public static void downloadFileParallel(String fileName, String targetPath, String host, int port, int streamCount) throws IOException {
+        File partFile = new File(targetPath + Constants.DOWNLOAD_PART_SUFFIX);
+        long start = System.nanoTime();
+
+        long fileSize;
+        try (FileChannel fileChannel = FileChannel.open(partFile.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            // An empty range at offset 0 only asks for the size
+            fileSize = fetchRange(fileName, host, port, 0, 0, fileChannel).fileSize;
+        } catch (IOException e) {
+            partFile.delete();
+            throw e;
+        }
+
+        int streams = (int) Math.max(1, Math.min(Math.min(streamCount, Constants.MAX_PARALLEL_STREAMS), fileSize));
+        long rangeSize = fileSize / streams;
+        ExecutorService executor = Executors.newFixedThreadPool(streams);
+        try (RandomAccessFile file = new RandomAccessFile(partFile, "rw")) {
+            file.setLength(fileSize);
+            FileChannel fileChannel = file.getChannel();
+
+            List<Future<RangeHeader>> ranges = new ArrayList<>();
+            for (int i = 0; i < streams; i++) {
+                long offset = i * rangeSize;
+                long length = i == streams - 1 ? fileSize - offset : rangeSize;
+                ranges.add(executor.submit(() -> fetchRange(fileName, host, port, offset, length, fileChannel)));
+            }
+            for (Future<RangeHeader> range : ranges) {
+                if (range.get().fileSize != fileSize) throw new IOException("File '" + fileName + "' changed during download");
+            }
+        } catch (IOException e) {
+            partFile.delete();
+            throw e;
+        } catch (InterruptedException e) {
+            partFile.delete();
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Parallel download of '" + fileName + "' interrupted");
+        } catch (ExecutionException e) {
+            partFile.delete();
+            if (e.getCause() instanceof IOException ioException) throw ioException;
+            throw new IOException("Parallel download of '" + fileName + "' failed", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+
+        complete(fileName, partFile, targetPath, start);
+    }
+
+    // Requests [offset, offset + length) and writes it at the same offset of fileChannel
+    private static RangeHeader fetchRange(String fileName, String host, int port, long offset, long length,
+            FileChannel fileChannel) throws IOException {
+        try (SocketChannel channel = Client.getSocketTuning().connect(host, port)) {
+            byte[] fileNameBytes = fileName.getBytes(StandardCharsets.UTF_8);
+            ByteBuffer request = ByteBuffer.allocate(Integer.BYTES + 1 + Integer.BYTES + fileNameBytes.length + Long.BYTES + Long.BYTES);
+            request.putInt(Constants.PROTOCOL_MAGIC).put(Constants.REQUEST_DOWNLOAD)
+                    .putInt(fileNameBytes.length).put(fileNameBytes).putLong(offset).putLong(length).flip();
+            writeFully(channel, request);
+
+            ByteBuffer status = ByteBuffer.allocate(1);
+            if (channel.read(status) == -1) throw new EOFException("Server closed connection unexpectedly");
+            byte response = status.get(0);
+            if (response == Constants.RESPONSE_BUSY) throw new IOException("Download of '" + fileName + "' rejected: server is busy, try again later");
+            if (response != Constants.RESPONSE_SUCCESS) throw new RangeRejectedException("Server refused download of '" + fileName + "' from offset " + offset);
+
+            ByteBuffer headerBuffer = ByteBuffer.allocate(Long.BYTES + Long.BYTES);
+            readFully(channel, headerBuffer);
+            headerBuffer.flip();
+            RangeHeader header = new RangeHeader(headerBuffer.getLong(), headerBuffer.getLong());
+
+            // transferFrom lands the socket data in the file without a user-space copy where the OS allows it
+            long position = offset;
+            long end = offset + header.length;
+            while (position < end) {
+                long received = fileChannel.transferFrom(channel, position, end - position);
+                if (received == 0) throw new EOFException("Server closed connection after " + (position - offset) + " of " + header.length + " bytes");
+                position += received;
+            }
+
+            ByteBuffer confirmation = ByteBuffer.allocate(1);
+            if (channel.read(confirmation) == -1 || confirmation.get(0) != Constants.RESPONSE_SUCCESS) {
+                throw new IOException("Server did not confirm range [" + offset + ", +" + header.length + ") of '" + fileName + "'");
+            }
+            return header;
+        }
+    }
+
+    private static void complete(String fileName, File partFile, String targetPath, long startNanos) throws IOException {
+        Files.move(partFile.toPath(), new File(targetPath).toPath(), StandardCopyOption.REPLACE_EXISTING);
+        long bytes = new File(targetPath).length();
+        double seconds = Math.max(1e-9, (System.nanoTime() - startNanos) / 1e9);
+        System.out.printf("File '%s' downloaded to %s: %d bytes, %.2f MB/s%n",
+                fileName, targetPath, bytes, bytes / seconds / Constants.BYTES_TO_MEGABYTES_DIVISOR);
+    }
+
+    private static void readFully(SocketChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) == -1) throw new EOFException("Server closed connection unexpectedly");
+        }
+    }
+
+    private static void writeFully(SocketChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private static class RangeHeader {
+        private final long fileSize;
+        private final long length;
+
+        private RangeHeader(long fileSize, long length) {
+            this.fileSize = fileSize;
+            this.length = length;
+        }
+    }
+
+    private static class RangeRejectedException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        private RangeRejectedException(String message) {
+            super(message);
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package nets.labs.lab2.client;
+
+import nets.labs.lab2.server.Constants;
+
+import java.io.*;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+// Sends many files over one connection as interleaved frames; acks arrive asynchronously per file
+public class MultiplexClient {
+    public static void sendDirectory(String dirPath, String host, int port) throws IOException {
+        Path root = Paths.get(dirPath);
+        if (!Files.isDirectory(root)) throw new FileNotFoundException("Path is not a directory: " + dirPath);
+
+        List<Path> files;
+        try (Stream<Path> walk = Files.walk(root)) {
+            files = walk.filter(Files::isRegularFile).toList();
+        }
+        // Relative names with '/' let the server recreate the directory layout under uploads
+        List<String> names = files.stream()
+                .map(file -> root.relativize(file).toString().replace(File.separatorChar, '/'))
+                .toList();
+        send(files, names, host, port);
+    }
+
+    public static void sendFiles(List<String> filePaths, String host, int port) throws IOException {
+        List<Path> files = new ArrayList<>();
+        for (String filePath : filePaths) {
+            Path file = Paths.get(filePath);
+            if (!Files.isRegularFile(file) || !Files.isReadable(file)) throw new FileNotFoundException("File is not readable: " + filePath);
+            files.add(file);
+        }
+        send(files, files.stream().map(file -> file.getFileName().toString()).toList(), host, port);
+    }
+
+    private static void send(List<Path> files, List<String> names, String host, int port) throws IOException {
+        System.out.println("Sending " + files.size() + " files over one connection to " + host + ":" + port);
+
+        Map<Integer, String> pending = new ConcurrentHashMap<>();
+        List<String> failed = new ArrayList<>();
+        AtomicInteger succeeded = new AtomicInteger();
+        CountDownLatch allAcked = new CountDownLatch(files.size());
+        Semaphore unacked = new Semaphore(Constants.MULTIPLEX_UNACKED_STREAMS);
+        Deque<OutgoingStream> active = new ArrayDeque<>();
+
+        try (Socket socket = Client.getSocketTuning().connect(host, port).socket();
+            DataOutputStream output = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), Constants.MULTIPLEX_FRAME_DATA_SIZE));
+            DataInputStream input = new DataInputStream(new BufferedInputStream(socket.getInputStream()))) {
+
+            output.writeInt(Constants.PROTOCOL_MAGIC);
+            output.writeByte(Constants.REQUEST_MULTIPLEX);
+
+            Thread ackReader = Thread.ofPlatform().daemon().start(() -> {
+                try {
+                    while (allAcked.getCount() > 0) {
+                        byte frameType = input.readByte();
+                        int streamId = input.readInt();
+                        byte response = input.readByte();
+                        if (frameType != Constants.FRAME_ACK) throw new IOException("Unexpected frame type: " + frameType);
+
+                        String name = pending.remove(streamId);
+                        if (response == Constants.RESPONSE_SUCCESS) {
+                            succeeded.incrementAndGet();
+                        } else {
+                            synchronized (failed) {
+                                failed.add(name);
+                            }
+                        }
+                        unacked.release();
+                        allAcked.countDown();
+                    }
+                } catch (IOException e) {
+                    System.out.println("Multiplexed transfer failed: " + e.getMessage());
+                    // Unblock the sender; its next write fails on the dead connection
+                    unacked.release(files.size());
+                    while (allAcked.getCount() > 0) allAcked.countDown();
+                }
+            });
+
+            byte[] buffer = new byte[Constants.MULTIPLEX_FRAME_DATA_SIZE];
+            int next = 0;
+
+            while (next < files.size() || !active.isEmpty()) {
+                while (active.size() < Constants.MULTIPLEX_ACTIVE_STREAMS && next < files.size()) {
+                    // Acks only come back for frames the server has seen, so flush before waiting for one
+                    if (!unacked.tryAcquire()) {
+                        output.flush();
+                        unacked.acquire();
+                    }
+                    int streamId = next;
+                    OutgoingStream stream = new OutgoingStream(streamId, new FileInputStream(files.get(next).toFile()));
+                    pending.put(streamId, names.get(next));
+                    byte[] nameBytes = names.get(next).getBytes(StandardCharsets.UTF_8);
+                    output.writeByte(Constants.FRAME_OPEN);
+                    output.writeInt(streamId);
+                    output.writeInt(nameBytes.length);
+                    output.write(nameBytes);
+                    output.writeLong(Files.size(files.get(next)));
+                    active.addLast(stream);
+                    next++;
+                }
+
+                // Round-robin one frame per active file so large files do not hold back small ones
+                OutgoingStream stream = active.pollFirst();
+                int bytesRead = stream.input.read(buffer);
+                if (bytesRead > 0) {
+                    output.writeByte(Constants.FRAME_DATA);
+                    output.writeInt(stream.id);
+                    output.writeInt(bytesRead);
+                    output.write(buffer, 0, bytesRead);
+                    active.addLast(stream);
+                } else {
+                    stream.input.close();
+                    output.writeByte(Constants.FRAME_END);
+                    output.writeInt(stream.id);
+                }
+            }
+            output.flush();
+
+            allAcked.await();
+            ackReader.join();
+            output.writeByte(Constants.FRAME_CLOSE);
+            output.writeInt(0);
+            output.flush();
+            int response = input.read();
+
+            System.out.println("Multiplexed transfer finished: " + succeeded.get() + " succeeded, "
+                    + failed.size() + " failed, " + pending.size() + " unacknowledged"
+                    + (response == 1 ? "" : " (server did not confirm the connection close)"));
+            for (String name : failed) {
+                System.out.println("  failed: " + name);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Multiplexed transfer interrupted");
+        } finally {
+            for (OutgoingStream stream : active) {
+                stream.input.close();
+            }
+        }
+    }
+
+    private static class OutgoingStream {
+        private final int id;
+        private final InputStream input;
+
+        private OutgoingStream(int id, InputStream input) {
+            this.id = id;
+            this.input = input;
+        }
+    }
+}
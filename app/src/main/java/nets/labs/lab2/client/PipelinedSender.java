@@ -0,0 +1,117 @@
+package nets.labs.lab2.client;
+
+import nets.labs.lab2.server.Constants;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicReference;
+
+// Plain upload where a reader thread fills a ring of readAheadDepth buffers while the caller drains them
+// to the socket, so disk reads and socket writes overlap instead of taking turns
+class PipelinedSender {
+    private static final ByteBuffer END_OF_FILE = ByteBuffer.allocate(0);
+
+    private final File file;
+    private final BlockingQueue<ByteBuffer> freeBuffers;
+    private final BlockingQueue<ByteBuffer> filledBuffers;
+    private final AtomicReference<IOException> readFailure = new AtomicReference<>();
+    // Time the reader waited for a free buffer (socket slower) and the writer waited for data (disk slower)
+    private volatile long readerStallNanos;
+    private long writerStallNanos;
+
+    PipelinedSender(File file, int readAheadDepth) {
+        if (readAheadDepth < 1) throw new IllegalArgumentException("Read-ahead depth must be at least 1: " + readAheadDepth);
+        this.file = file;
+        this.freeBuffers = new ArrayBlockingQueue<>(readAheadDepth);
+        // One extra slot so END_OF_FILE never blocks the reader
+        this.filledBuffers = new ArrayBlockingQueue<>(readAheadDepth + 1);
+        for (int i = 0; i < readAheadDepth; i++) {
+            freeBuffers.add(ByteBuffer.allocateDirect(Constants.PIPELINE_BUFFER_SIZE));
+        }
+    }
+
+    int send(String host, int port) throws IOException {
+        Thread reader = Thread.ofPlatform().name("read-ahead-" + file.getName()).daemon().start(this::readAhead);
+        long start = System.nanoTime();
+
+        try (SocketChannel channel = Client.getSocketTuning().connect(host, port)) {
+            byte[] fileNameBytes = file.getName().getBytes(StandardCharsets.UTF_8);
+            ByteBuffer header = ByteBuffer.allocate(Integer.BYTES + fileNameBytes.length + Long.BYTES);
+            header.putInt(fileNameBytes.length).put(fileNameBytes).putLong(file.length()).flip();
+            writeFully(channel, header);
+
+            InputStream response = channel.socket().getInputStream();
+            long sentBytes = 0;
+            while (true) {
+                long waitStart = System.nanoTime();
+                ByteBuffer buffer = filledBuffers.take();
+                writerStallNanos += System.nanoTime() - waitStart;
+                if (buffer == END_OF_FILE) break;
+                // An answer before the payload is done means the server refused the upload (RESPONSE_BUSY)
+                if (response.available() > 0) break;
+
+                sentBytes += buffer.remaining();
+                writeFully(channel, buffer);
+                freeBuffers.put(buffer);
+            }
+            if (readFailure.get() != null) throw readFailure.get();
+
+            int result = response.read();
+            double seconds = Math.max(1e-9, (System.nanoTime() - start) / 1e9);
+            System.out.printf("File '%s': %d bytes at %.2f MB/s, reader stalled %d ms waiting for the socket, writer stalled %d ms waiting for the disk%n",
+                    file.getName(), sentBytes, sentBytes / seconds / Constants.BYTES_TO_MEGABYTES_DIVISOR,
+                    readerStallNanos / 1_000_000, writerStallNanos / 1_000_000);
+            return result;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Pipelined transfer of '" + file.getName() + "' interrupted");
+        } finally {
+            reader.interrupt();
+        }
+    }
+
+    private void readAhead() {
+        long stalled = 0;
+        try (FileChannel fileChannel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            while (true) {
+                long waitStart = System.nanoTime();
+                ByteBuffer buffer = freeBuffers.take();
+                stalled += System.nanoTime() - waitStart;
+                readerStallNanos = stalled;
+
+                buffer.clear();
+                // Fill the whole buffer so the writer hands the socket large writes
+                int bytesRead = 0;
+                while (buffer.hasRemaining() && (bytesRead = fileChannel.read(buffer)) != -1) {
+                    // keep reading
+                }
+                buffer.flip();
+                if (buffer.hasRemaining()) filledBuffers.put(buffer);
+                if (bytesRead == -1) {
+                    filledBuffers.put(END_OF_FILE);
+                    return;
+                }
+            }
+        } catch (IOException e) {
+            readFailure.set(e);
+            filledBuffers.offer(END_OF_FILE);
+        } catch (InterruptedException e) {
+            // The writer is done or gave up
+        }
+    }
+
+    private static void writeFully(SocketChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package nets.labs.lab2.client;
+
+import nets.labs.lab2.server.Constants;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Consumer;
+
+// Response stream of an upload that asked for progress frames. A reader thread hands every frame to the listener,
+// so available() and read() only ever see the final response byte, just like a plain socket stream.
+class ProgressReceiver extends InputStream {
+    private final DataInputStream input;
+    private final long totalBytes;
+    private final Consumer<UploadProgress> listener;
+    private final CompletableFuture<Integer> response = new CompletableFuture<>();
+
+    ProgressReceiver(InputStream input, long totalBytes, Consumer<UploadProgress> listener) {
+        this.input = new DataInputStream(input);
+        this.totalBytes = totalBytes;
+        this.listener = listener;
+        Thread.ofVirtual().name("upload-progress").start(this::run);
+    }
+
+    private void run() {
+        try {
+            int type;
+            while ((type = input.read()) == Constants.RESPONSE_PROGRESS) {
+                UploadProgress progress = new UploadProgress(input.readLong(), totalBytes, input.readLong(), input.readLong());
+                try {
+                    listener.accept(progress);
+                } catch (RuntimeException e) {
+                    System.err.println("Progress listener failed: " + e.getMessage());
+                }
+            }
+            response.complete(type);
+        } catch (IOException e) {
+            // Same as a plain stream hitting the end: the caller reports an unexpected close
+            response.complete(-1);
+        }
+    }
+
+    @Override
+    public int available() {
+        return response.isDone() ? 1 : 0;
+    }
+
+    @Override
+    public int read() throws IOException {
+        try {
+            return response.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the server response");
+        } catch (ExecutionException e) {
+            throw new IOException(e.getCause());
+        }
+    }
+}
@@ -0,0 +1,9 @@
+package nets.labs.lab2.client;
+
+public enum TransferMode {
+    STREAM,
+    ZERO_COPY,
+    PARALLEL,
+    // Disk reads run ahead of socket writes on a separate thread
+    PIPELINED
+}
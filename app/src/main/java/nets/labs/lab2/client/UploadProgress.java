@@ -0,0 +1,15 @@
+package nets.labs.lab2.client;
+
+import lombok.Value;
+
+// One progress frame of an upload, as measured by the server
+@Value
+public class UploadProgress {
+    // Bytes the server has written to the file so far
+    long bytes;
+    long totalBytes;
+    // Rate over the last sampling interval; 0 for a whole interval means the transfer is stalled
+    long bytesPerSecond;
+    // Negative while the server cannot estimate it
+    long etaMillis;
+}
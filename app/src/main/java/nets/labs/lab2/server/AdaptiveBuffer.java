@@ -0,0 +1,47 @@
+package nets.labs.lab2.server;
+
+import java.nio.ByteBuffer;
+
+// Per-connection pooled buffer that grows for senders who keep it full and shrinks for slow ones
+class AdaptiveBuffer implements AutoCloseable {
+    private final BufferPool pool;
+    private ByteBuffer buffer;
+    private int fullReads;
+    private int shortReads;
+
+    AdaptiveBuffer(BufferPool pool) {
+        this.pool = pool;
+        this.buffer = pool.acquire(pool.getMinSize());
+    }
+
+    ByteBuffer buffer() {
+        return buffer;
+    }
+
+    // Call after the data of the previous read has been consumed: the buffer may be swapped
+    void onRead(int bytesRead) {
+        int capacity = buffer.capacity();
+        if (bytesRead == capacity) {
+            shortReads = 0;
+            if (++fullReads >= Constants.ADAPTIVE_GROW_AFTER_READS && capacity < pool.getMaxSize()) resize(capacity * 2);
+        } else if (bytesRead < capacity / 4) {
+            fullReads = 0;
+            if (++shortReads >= Constants.ADAPTIVE_SHRINK_AFTER_READS && capacity > pool.getMinSize()) resize(capacity / 2);
+        } else {
+            fullReads = 0;
+            shortReads = 0;
+        }
+    }
+
+    private void resize(int size) {
+        pool.release(buffer);
+        buffer = pool.acquire(size);
+        fullReads = 0;
+        shortReads = 0;
+    }
+
+    @Override
+    public void close() {
+        pool.release(buffer);
+    }
+}
@@ -0,0 +1,46 @@
+package nets.labs.lab2.server;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Caps concurrent transfers; a bounded number may wait for a slot, the rest are turned away at once
+class AdmissionController {
+    private final Semaphore slots;
+    private final int maxQueued;
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicLong rejected = new AtomicLong();
+
+    AdmissionController(int maxConcurrent, int maxQueued) {
+        this.slots = new Semaphore(maxConcurrent);
+        this.maxQueued = maxQueued;
+    }
+
+    boolean admit() throws InterruptedException {
+        if (slots.tryAcquire()) return true;
+
+        if (queued.incrementAndGet() > maxQueued) {
+            queued.decrementAndGet();
+            rejected.incrementAndGet();
+            return false;
+        }
+        try {
+            slots.acquire();
+            return true;
+        } finally {
+            queued.decrementAndGet();
+        }
+    }
+
+    void release() {
+        slots.release();
+    }
+
+    int getQueued() {
+        return queued.get();
+    }
+
+    long getRejected() {
+        return rejected.get();
+    }
+}
@@ -0,0 +1,95 @@
+package nets.labs.lab2.server;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.AsynchronousChannelGroup;
+import java.nio.channels.AsynchronousServerSocketChannel;
+import java.nio.channels.AsynchronousSocketChannel;
+import java.nio.channels.CompletionHandler;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class AsyncServer implements UploadServer {
+    private final ServerConfig config;
+    private final ServerContext context;
+    // Runs the completion handlers of the sockets and of the upload files alike
+    private ExecutorService ioThreads;
+    private AsynchronousChannelGroup group;
+    private AsynchronousServerSocketChannel serverChannel;
+
+    public AsyncServer() {
+        this(ServerConfig.defaults());
+    }
+
+    public AsyncServer(ServerConfig config) {
+        this.config = config;
+        this.context = new ServerContext(config);
+    }
+
+    @Override
+    public void start(int port) throws IOException {
+        int threads = Math.max(1, config.getEventLoopThreads());
+        AtomicInteger threadNumber = new AtomicInteger();
+        ioThreads = Executors.newFixedThreadPool(threads, task -> new Thread(task, "async-io-" + threadNumber.getAndIncrement()));
+        group = AsynchronousChannelGroup.withThreadPool(ioThreads);
+        serverChannel = AsynchronousServerSocketChannel.open(group);
+        config.getSocketTuning().applyToServer(serverChannel);
+        serverChannel.bind(new InetSocketAddress(port));
+
+        context.start();
+        System.out.println("Async server started on port " + port + " with " + threads + " I/O threads");
+        acceptNext();
+    }
+
+    private void acceptNext() {
+        serverChannel.accept(null, new CompletionHandler<AsynchronousSocketChannel, Void>() {
+            @Override
+            public void completed(AsynchronousSocketChannel clientChannel, Void ignored) {
+                acceptNext();
+                try {
+                    config.getSocketTuning().applyToAccepted(clientChannel);
+                } catch (IOException e) {
+                    System.err.println("Error tuning client socket: " + e.getMessage());
+                }
+                new AsyncUploadSession(clientChannel, context, ioThreads).start();
+            }
+
+            @Override
+            public void failed(Throwable e, Void ignored) {
+                if (serverChannel.isOpen()) {
+                    System.err.println("Error accepting client: " + e.getMessage());
+                    acceptNext();
+                }
+            }
+        });
+    }
+
+    @Override
+    public void stop() throws IOException {
+        serverChannel.close();
+        group.shutdownNow();
+        try {
+            group.awaitTermination(Constants.JOIN_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        context.stop();
+    }
+
+    @Override
+    public TransferMetrics getMetrics() {
+        return context.getMetrics();
+    }
+
+    @Override
+    public BufferPool getBufferPool() {
+        return context.getBufferPool();
+    }
+
+    @Override
+    public UploadStorage getStorage() {
+        return context.getStorage();
+    }
+}
@@ -0,0 +1,349 @@
+package nets.labs.lab2.server;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.AsynchronousSocketChannel;
+import java.nio.channels.Channels;
+import java.nio.channels.CompletionHandler;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Set;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicLong;
+
+// One connection of AsyncServer. Every step is a completion handler that starts the next I/O and returns,
+// so no thread waits on the socket or the disk. The payload is double-buffered: while one buffer is written
+// to the file at its offset, the next socket read fills the other.
+class AsyncUploadSession {
+    private final AsynchronousSocketChannel channel;
+    private final ServerContext context;
+    private final ExecutorService ioThreads;
+    private final AtomicLong totalBytes = new AtomicLong(0);
+    private final long startNanos = System.nanoTime();
+    private final Deque<ByteBuffer> freeBuffers = new ArrayDeque<>();
+    private final Deque<ByteBuffer> filledBuffers = new ArrayDeque<>();
+    private final CompletionHandler<Integer, ByteBuffer> payloadRead = new CompletionHandler<>() {
+        @Override
+        public void completed(Integer bytesRead, ByteBuffer buffer) {
+            onPayloadRead(bytesRead, buffer);
+        }
+
+        @Override
+        public void failed(Throwable e, ByteBuffer buffer) {
+            onPayloadFailed(e, buffer);
+        }
+    };
+    private final CompletionHandler<Integer, ByteBuffer> payloadWrite = new CompletionHandler<>() {
+        @Override
+        public void completed(Integer bytesWritten, ByteBuffer buffer) {
+            onPayloadWritten(bytesWritten, buffer);
+        }
+
+        @Override
+        public void failed(Throwable e, ByteBuffer buffer) {
+            onPayloadFailed(e, buffer);
+        }
+    };
+    private String clientAddress = "unknown";
+    private String fileName;
+    private long fileSize;
+    private UploadOptions options = UploadOptions.defaults();
+    private PayloadDigest digest;
+    private UploadCoordinator.PendingUpload pending;
+    private AsynchronousFileChannel fileChannel;
+    private TransferMetrics.Transfer transfer;
+    private ProgressReporter progress;
+    // Payload pipeline state, guarded by this
+    private boolean reading;
+    private boolean writing;
+    private long received;
+    private long written;
+    private boolean closed;
+
+    AsyncUploadSession(AsynchronousSocketChannel channel, ServerContext context, ExecutorService ioThreads) {
+        this.channel = channel;
+        this.context = context;
+        this.ioThreads = ioThreads;
+    }
+
+    // Same header as ClientHandler: a plain v1 upload, or PROTOCOL_MAGIC followed by a request type
+    void start() {
+        try {
+            clientAddress = ((InetSocketAddress) channel.getRemoteAddress()).getAddress().getHostAddress();
+        } catch (IOException ignored) {
+            // Only used for logs and metrics
+        }
+        read(Integer.BYTES, header -> {
+            int value = header.getInt();
+            if (value != Constants.PROTOCOL_MAGIC) {
+                readFileName(value, false);
+                return;
+            }
+            read(1, type -> {
+                byte requestType = type.get();
+                if (requestType != Constants.REQUEST_UPLOAD) {
+                    throw new IOException("Request type " + requestType + " is not supported by the async engine");
+                }
+                read(Integer.BYTES, length -> readFileName(length.getInt(), true));
+            });
+        });
+    }
+
+    private void readFileName(int fileNameLength, boolean withOptions) {
+        FileValidator.validateFileNameLength(fileNameLength);
+        read(fileNameLength, name -> {
+            fileName = StandardCharsets.UTF_8.decode(name).toString();
+            read(Long.BYTES, size -> {
+                fileSize = size.getLong();
+                // A negative size would never start a read nor complete, and the session would hang on its claim
+                if (fileSize < 0) throw new IllegalArgumentException("Invalid file size: " + fileSize);
+                if (!withOptions) {
+                    beginPayload();
+                    return;
+                }
+                read(1, count -> {
+                    int optionCount = count.get() & 0xFF;
+                    read(2 * optionCount, pairs -> {
+                        // UploadOptions parses the count and the pairs together, as ClientHandler reads them
+                        byte[] encoded = new byte[1 + pairs.remaining()];
+                        encoded[0] = (byte) optionCount;
+                        pairs.get(encoded, 1, encoded.length - 1);
+                        options = UploadOptions.read(new DataInputStream(new ByteArrayInputStream(encoded)));
+                        beginPayload();
+                    });
+                });
+            });
+        });
+    }
+
+    private void beginPayload() throws IOException {
+        if (options.getCompressionType() != CompressionType.NONE) {
+            throw new IOException("Compressed uploads are not supported by the async engine");
+        }
+        transfer = context.getMetrics().register(fileName, clientAddress, fileSize, totalBytes);
+        pending = context.getUploads().begin(fileName);
+        fileChannel = AsynchronousFileChannel.open(pending.getTempFile().toPath(),
+                Set.of(StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING), ioThreads);
+        digest = options.getChecksumType().newDigest();
+        if (options.isProgress()) progress = new ProgressReporter(context.getMetrics(), transfer, Channels.newOutputStream(channel));
+
+        synchronized (this) {
+            for (int i = 0; i < 2; i++) {
+                freeBuffers.add(context.getBufferPool().acquire(context.getSocketTuning().getChunkBytes()));
+            }
+            if (fileSize == 0) {
+                payloadReceived();
+            } else {
+                pump();
+            }
+        }
+    }
+
+    // Starts a socket read into a free buffer and a file write of the oldest filled one, whichever is idle
+    private void pump() {
+        if (!reading && received < fileSize && !freeBuffers.isEmpty()) {
+            ByteBuffer buffer = freeBuffers.poll();
+            buffer.clear().limit((int) Math.min(buffer.capacity(), fileSize - received));
+            reading = true;
+            channel.read(buffer, buffer, payloadRead);
+        }
+        if (!writing && !filledBuffers.isEmpty()) {
+            ByteBuffer buffer = filledBuffers.poll();
+            writing = true;
+            fileChannel.write(buffer, written, buffer, payloadWrite);
+        }
+    }
+
+    private synchronized void onPayloadRead(int bytesRead, ByteBuffer buffer) {
+        reading = false;
+        if (closed) {
+            context.getBufferPool().release(buffer);
+            return;
+        }
+        try {
+            if (bytesRead == -1) {
+                context.getBufferPool().release(buffer);
+                throw new EOFException("Unexpected end of stream before receiving all data");
+            }
+            buffer.flip();
+            digest.update(buffer.duplicate());
+            received += bytesRead;
+            totalBytes.addAndGet(bytesRead);
+            filledBuffers.add(buffer);
+            pump();
+        } catch (Exception e) {
+            fail(e);
+        }
+    }
+
+    private synchronized void onPayloadWritten(int bytesWritten, ByteBuffer buffer) {
+        if (closed) {
+            writing = false;
+            context.getBufferPool().release(buffer);
+            return;
+        }
+        try {
+            written += bytesWritten;
+            // A completion handler must not wait for a write slot; the thread count already bounds concurrent writes
+            pending.getDevice().recordUnscheduled(bytesWritten);
+            if (buffer.hasRemaining()) {
+                fileChannel.write(buffer, written, buffer, payloadWrite);
+                return;
+            }
+            writing = false;
+            freeBuffers.add(buffer);
+            if (written == fileSize) {
+                payloadReceived();
+            } else {
+                pump();
+            }
+        } catch (Exception e) {
+            fail(e);
+        }
+    }
+
+    private synchronized void onPayloadFailed(Throwable e, ByteBuffer buffer) {
+        context.getBufferPool().release(buffer);
+        fail(e);
+    }
+
+    private void payloadReceived() throws IOException {
+        releaseIdleBuffers();
+        ChecksumType checksumType = options.getChecksumType();
+        if (checksumType == ChecksumType.NONE) {
+            publish();
+            return;
+        }
+        read(checksumType.getDigestLength(), expected -> {
+            byte[] expectedBytes = new byte[expected.remaining()];
+            expected.get(expectedBytes);
+            FileValidator.validateChecksum(checksumType, expectedBytes, digest.finish());
+            publish();
+        });
+    }
+
+    private void publish() throws IOException {
+        fileChannel.close();
+        FileValidator.validateFileSize(fileSize, totalBytes.get());
+        // The fsync runs off the I/O threads; the answer goes out once it is done
+        context.getDurability().commitAsync(pending.publish()).whenComplete((ignored, error) -> {
+            if (error == null) {
+                finish(Constants.RESPONSE_SUCCESS);
+            } else {
+                fail(error instanceof CompletionException ? error.getCause() : error);
+            }
+        });
+    }
+
+    private void fail(Throwable e) {
+        synchronized (this) {
+            if (closed) return;
+        }
+        System.err.println("Error handling client " + clientAddress + " for file '" + fileName + "': " + e.getMessage());
+        finish(Constants.RESPONSE_FAILURE);
+    }
+
+    // Releases the transfer and answers; buffers still owned by a pending read or write are released by its handler
+    private void finish(byte response) {
+        synchronized (this) {
+            if (closed) return;
+            closed = true;
+            releaseIdleBuffers();
+        }
+        try {
+            if (fileChannel != null) fileChannel.close();
+        } catch (IOException ignored) {}
+        if (transfer != null) transfer.close();
+        if (pending != null) pending.abort();
+
+        // The last progress frame must be out before the response; the reporter's writer blocks on the channel,
+        // so waiting for it here could stall an I/O thread of the group
+        if (progress != null) {
+            progress.closeAsync().whenComplete((ignored, error) -> writeResponse(response));
+        } else {
+            writeResponse(response);
+        }
+    }
+
+    private void writeResponse(byte response) {
+        channel.write(ByteBuffer.wrap(new byte[]{response}), null, new CompletionHandler<Integer, Void>() {
+            @Override
+            public void completed(Integer bytesWritten, Void ignored) {
+                if (response == Constants.RESPONSE_SUCCESS) reportThroughput();
+                closeChannel();
+            }
+
+            @Override
+            public void failed(Throwable e, Void ignored) {
+                closeChannel();
+            }
+        });
+    }
+
+    private void reportThroughput() {
+        double seconds = Math.max(1e-9, (System.nanoTime() - startNanos) / 1e9);
+        System.out.printf("Client %s: %d bytes in %.2f s, %.2f MB/s (%s)%n", clientAddress, totalBytes.get(),
+                seconds, totalBytes.get() / seconds / Constants.BYTES_TO_MEGABYTES_DIVISOR,
+                context.getSocketTuning().describe(channel));
+    }
+
+    private synchronized void releaseIdleBuffers() {
+        for (ByteBuffer buffer : freeBuffers) {
+            context.getBufferPool().release(buffer);
+        }
+        for (ByteBuffer buffer : filledBuffers) {
+            context.getBufferPool().release(buffer);
+        }
+        freeBuffers.clear();
+        filledBuffers.clear();
+    }
+
+    private void closeChannel() {
+        try {
+            channel.close();
+        } catch (IOException ignored) {}
+    }
+
+    // Reads exactly length bytes, then hands them to next
+    private void read(int length, Step next) {
+        readFully(ByteBuffer.allocate(length), next);
+    }
+
+    private void readFully(ByteBuffer buffer, Step next) {
+        if (!buffer.hasRemaining()) {
+            try {
+                next.accept(buffer.flip());
+            } catch (Exception e) {
+                fail(e);
+            }
+            return;
+        }
+        channel.read(buffer, null, new CompletionHandler<Integer, Void>() {
+            @Override
+            public void completed(Integer bytesRead, Void ignored) {
+                if (bytesRead == -1) {
+                    fail(new EOFException("Client closed connection before the end of the request"));
+                    return;
+                }
+                readFully(buffer, next);
+            }
+
+            @Override
+            public void failed(Throwable e, Void ignored) {
+                fail(e);
+            }
+        });
+    }
+
+    private interface Step {
+        void accept(ByteBuffer data) throws IOException;
+    }
+}
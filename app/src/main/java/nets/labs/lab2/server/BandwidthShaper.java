@@ -0,0 +1,59 @@
+package nets.labs.lab2.server;
+
+import java.io.InterruptedIOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Global and per-client-IP token buckets; a rate of 0 means unlimited
+class BandwidthShaper {
+    private final TokenBucket globalBucket;
+    private final long clientBytesPerSecond;
+    private final Map<String, Long> clientRateOverrides;
+    private final Map<String, TokenBucket> clientBuckets = new ConcurrentHashMap<>();
+    private final AtomicLong lastPruneNanos = new AtomicLong(System.nanoTime());
+
+    BandwidthShaper(ServerConfig config) {
+        this.globalBucket = config.getGlobalBytesPerSecond() > 0 ? new TokenBucket(config.getGlobalBytesPerSecond()) : null;
+        this.clientBytesPerSecond = config.getClientBytesPerSecond();
+        this.clientRateOverrides = Map.copyOf(config.getClientRateOverrides());
+    }
+
+    // Largest read that fits into a fraction of a second of the tightest applicable rate
+    int readLimit(String client, int bufferSize) {
+        long rate = Long.MAX_VALUE;
+        TokenBucket clientBucket = clientBucket(client);
+        if (clientBucket != null) rate = clientBucket.getBytesPerSecond();
+        if (globalBucket != null) rate = Math.min(rate, globalBucket.getBytesPerSecond());
+        if (rate == Long.MAX_VALUE) return bufferSize;
+        return (int) Math.max(1, Math.min(bufferSize, (long) (rate * Constants.SHAPING_READ_SECONDS)));
+    }
+
+    void throttle(String client, long bytes) throws InterruptedIOException {
+        try {
+            TokenBucket clientBucket = clientBucket(client);
+            if (clientBucket != null) clientBucket.consume(bytes);
+            if (globalBucket != null) globalBucket.consume(bytes);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while shaping bandwidth for " + client);
+        }
+    }
+
+    private TokenBucket clientBucket(String client) {
+        long rate = clientRateOverrides.getOrDefault(client, clientBytesPerSecond);
+        if (rate <= 0) return null;
+        pruneIdleBuckets();
+        return clientBuckets.computeIfAbsent(client, address -> new TokenBucket(rate));
+    }
+
+    // Clients come and go, so full buckets are dropped now and then; one thread prunes per interval
+    private void pruneIdleBuckets() {
+        long now = System.nanoTime();
+        long last = lastPruneNanos.get();
+        if (now - last < TimeUnit.MILLISECONDS.toNanos(Constants.SHAPING_PRUNE_INTERVAL_MS)) return;
+        if (!lastPruneNanos.compareAndSet(last, now)) return;
+        clientBuckets.values().removeIf(bucket -> bucket.isIdle(now));
+    }
+}
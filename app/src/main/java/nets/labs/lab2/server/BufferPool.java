@@ -0,0 +1,81 @@
+package nets.labs.lab2.server;
+
+import java.nio.ByteBuffer;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Bounded pool of direct buffers in power-of-two size classes shared by all handlers
+public class BufferPool {
+    private final int minSize;
+    private final int maxSize;
+    private final long maxBytes;
+    private final Queue<ByteBuffer>[] freeBuffers;
+    private final AtomicLong allocatedBytes = new AtomicLong();
+    private final AtomicLong acquires = new AtomicLong();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong allocations = new AtomicLong();
+    private final AtomicLong fallbacks = new AtomicLong();
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public BufferPool(int minSize, int maxSize, long maxBytes) {
+        if (Integer.bitCount(minSize) != 1 || Integer.bitCount(maxSize) != 1 || minSize > maxSize) {
+            throw new IllegalArgumentException("Buffer sizes must be powers of two with min <= max: " + minSize + ", " + maxSize);
+        }
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+        this.maxBytes = maxBytes;
+        this.freeBuffers = new Queue[classOf(maxSize) + 1];
+        for (int i = 0; i < freeBuffers.length; i++) {
+            freeBuffers[i] = new ConcurrentLinkedQueue<>();
+        }
+    }
+
+    public int getMinSize() {
+        return minSize;
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public ByteBuffer acquire(int size) {
+        acquires.incrementAndGet();
+        int sizeClass = classOf(Math.max(minSize, Math.min(size, maxSize)));
+        int capacity = minSize << sizeClass;
+
+        ByteBuffer buffer = freeBuffers[sizeClass].poll();
+        if (buffer != null) {
+            hits.incrementAndGet();
+            return buffer.clear();
+        }
+        if (allocatedBytes.addAndGet(capacity) <= maxBytes) {
+            allocations.incrementAndGet();
+            return ByteBuffer.allocateDirect(capacity);
+        }
+        allocatedBytes.addAndGet(-capacity);
+        fallbacks.incrementAndGet();
+        return ByteBuffer.allocate(capacity);
+    }
+
+    public void release(ByteBuffer buffer) {
+        // Heap fallbacks were never counted against the budget, so they are simply dropped
+        if (!buffer.isDirect()) return;
+        freeBuffers[classOf(buffer.capacity())].offer(buffer.clear());
+    }
+
+    public BufferPoolStats stats() {
+        Map<Integer, Integer> idle = new LinkedHashMap<>();
+        for (int i = 0; i < freeBuffers.length; i++) {
+            idle.put(minSize << i, freeBuffers[i].size());
+        }
+        return new BufferPoolStats(acquires.get(), hits.get(), allocations.get(), fallbacks.get(),
+                allocatedBytes.get(), maxBytes, idle);
+    }
+
+    private int classOf(int size) {
+        return 32 - Integer.numberOfLeadingZeros((size - 1) / minSize);
+    }
+}
@@ -0,0 +1,17 @@
+package nets.labs.lab2.server;
+
+import lombok.Value;
+
+import java.util.Map;
+
+@Value
+public class BufferPoolStats {
+    long acquires;
+    long hits;
+    long allocations;
+    // Acquires served with an unpooled heap buffer because the direct memory budget was used up
+    long fallbacks;
+    long allocatedBytes;
+    long maxBytes;
+    Map<Integer, Integer> idleBuffersBySize;
+}
@@ -0,0 +1,102 @@
+package nets.labs.lab2.server;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.zip.CRC32C;
+
+public enum ChecksumType {
+    NONE(0, 0) {
+        @Override
+        public PayloadDigest newDigest() {
+            return new PayloadDigest() {
+                @Override
+                public void update(byte[] buffer, int offset, int length) {}
+
+                @Override
+                public void update(ByteBuffer data) {
+                    data.position(data.limit());
+                }
+
+                @Override
+                public byte[] finish() {
+                    return new byte[0];
+                }
+            };
+        }
+    },
+    CRC32C(1, Integer.BYTES) {
+        @Override
+        public PayloadDigest newDigest() {
+            CRC32C crc = new CRC32C();
+            return new PayloadDigest() {
+                @Override
+                public void update(byte[] buffer, int offset, int length) {
+                    crc.update(buffer, offset, length);
+                }
+
+                @Override
+                public void update(ByteBuffer data) {
+                    crc.update(data);
+                }
+
+                @Override
+                public byte[] finish() {
+                    return ByteBuffer.allocate(Integer.BYTES).putInt((int) crc.getValue()).array();
+                }
+            };
+        }
+    },
+    SHA256(2, 32) {
+        @Override
+        public PayloadDigest newDigest() {
+            MessageDigest sha;
+            try {
+                sha = MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException("SHA-256 is not available", e);
+            }
+            return new PayloadDigest() {
+                @Override
+                public void update(byte[] buffer, int offset, int length) {
+                    sha.update(buffer, offset, length);
+                }
+
+                @Override
+                public void update(ByteBuffer data) {
+                    sha.update(data);
+                }
+
+                @Override
+                public byte[] finish() {
+                    return sha.digest();
+                }
+            };
+        }
+    };
+
+    private final byte id;
+    private final int digestLength;
+
+    ChecksumType(int id, int digestLength) {
+        this.id = (byte) id;
+        this.digestLength = digestLength;
+    }
+
+    public byte getId() {
+        return id;
+    }
+
+    public int getDigestLength() {
+        return digestLength;
+    }
+
+    public abstract PayloadDigest newDigest();
+
+    public static ChecksumType fromId(byte id) {
+        for (ChecksumType type : values()) {
+            if (type.id == id) return type;
+        }
+        throw new IllegalArgumentException("Unknown checksum type: " + id);
+    }
+}
@@ -0,0 +1,52 @@
+package nets.labs.lab2.server;
+
+import lombok.Getter;
+import lombok.Value;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
+
+// Ordered list of chunk hashes that make up one deduplicated file
+@Getter
+class ChunkManifest {
+    private final long fileSize;
+    private final List<ChunkRef> chunks;
+
+    ChunkManifest(long fileSize, List<ChunkRef> chunks) {
+        this.fileSize = fileSize;
+        this.chunks = chunks;
+    }
+
+    static ChunkManifest read(File manifestFile) throws IOException {
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(manifestFile)))) {
+            long fileSize = input.readLong();
+            int chunkCount = input.readInt();
+            FileValidator.validateDedupChunkCount(fileSize, chunkCount);
+
+            List<ChunkRef> chunks = new ArrayList<>(chunkCount);
+            for (int i = 0; i < chunkCount; i++) {
+                int length = input.readInt();
+                byte[] hash = new byte[ChecksumType.SHA256.getDigestLength()];
+                input.readFully(hash);
+                chunks.add(new ChunkRef(length, hash));
+            }
+            return new ChunkManifest(fileSize, chunks);
+        }
+    }
+
+    void write(DataOutputStream output) throws IOException {
+        output.writeLong(fileSize);
+        output.writeInt(chunks.size());
+        for (ChunkRef chunk : chunks) {
+            output.writeInt(chunk.getLength());
+            output.write(chunk.getHash());
+        }
+    }
+
+    @Value
+    static class ChunkRef {
+        int length;
+        byte[] hash;
+    }
+}
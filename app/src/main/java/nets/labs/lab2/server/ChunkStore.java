@@ -0,0 +1,120 @@
+package nets.labs.lab2.server;
+
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HexFormat;
+
+// Content-addressed chunks (SHA-256 -> bytes) plus per-file manifests that list them in order.
+// Chunks are never removed, so a hash reported as present stays present for the rest of the upload.
+public class ChunkStore {
+    private final File chunkDir;
+    private final File manifestDir;
+
+    public ChunkStore() {
+        this(new File(Constants.CHUNK_STORE_DIR), new File(Constants.MANIFEST_DIR));
+    }
+
+    public ChunkStore(File chunkDir, File manifestDir) {
+        this.chunkDir = chunkDir;
+        this.manifestDir = manifestDir;
+    }
+
+    boolean contains(byte[] hash) {
+        return chunkFile(hash).isFile();
+    }
+
+    // Verifies data against its hash before it becomes visible under that hash
+    File put(byte[] hash, byte[] data) throws IOException {
+        PayloadDigest digest = ChecksumType.SHA256.newDigest();
+        digest.update(data, 0, data.length);
+        FileValidator.validateChecksum(ChecksumType.SHA256, hash, digest.finish());
+
+        File chunkFile = chunkFile(hash);
+        if (chunkFile.isFile()) return chunkFile;
+        chunkFile.getParentFile().mkdirs();
+
+        // Concurrent uploads of the same chunk each write their own temp file; whichever move lands last wins
+        Path tempFile = Files.createTempFile(chunkFile.getParentFile().toPath(), chunkFile.getName(), ".tmp");
+        try {
+            Files.write(tempFile, data);
+            Files.move(tempFile, chunkFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+        return chunkFile;
+    }
+
+    File saveManifest(String fileName, ChunkManifest manifest) throws IOException {
+        File manifestFile = manifestFile(fileName);
+        manifestFile.getParentFile().mkdirs();
+
+        // Same-name uploads may save at once, so each writes its own temp file like put does
+        Path tempFile = Files.createTempFile(manifestFile.getParentFile().toPath(), "." + manifestFile.getName(), ".tmp");
+        try {
+            try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile)))) {
+                manifest.write(output);
+            }
+            Files.move(tempFile, manifestFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+        return manifestFile;
+    }
+
+    boolean hasManifest(String fileName) throws IOException {
+        return manifestFile(fileName).isFile();
+    }
+
+    // Reassembles a previously deduplicated upload into targetFile; the file appears complete or not at all
+    public void rebuild(String fileName, File targetFile) throws IOException {
+        File manifestFile = manifestFile(fileName);
+        if (!manifestFile.isFile()) throw new FileNotFoundException("No manifest for file: " + fileName);
+
+        targetFile.getAbsoluteFile().getParentFile().mkdirs();
+        Path tempFile = Files.createTempFile(targetFile.getAbsoluteFile().getParentFile().toPath(), "." + targetFile.getName(), ".tmp");
+        try {
+            rebuild(ChunkManifest.read(manifestFile), tempFile.toFile());
+            Files.move(tempFile, targetFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
+    void rebuild(ChunkManifest manifest, File targetFile) throws IOException {
+        try (FileChannel output = FileChannel.open(targetFile.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            long position = 0;
+            for (ChunkManifest.ChunkRef chunk : manifest.getChunks()) {
+                try (FileChannel input = FileChannel.open(chunkFile(chunk.getHash()).toPath(), StandardOpenOption.READ)) {
+                    FileValidator.validateFileSize(chunk.getLength(), input.size());
+                    long copied = 0;
+                    while (copied < chunk.getLength()) {
+                        copied += input.transferTo(copied, chunk.getLength() - copied, output);
+                    }
+                    position += copied;
+                }
+            }
+            FileValidator.validateFileSize(manifest.getFileSize(), position);
+        } catch (IOException e) {
+            targetFile.delete();
+            throw e;
+        }
+    }
+
+    private File chunkFile(byte[] hash) {
+        String hex = HexFormat.of().formatHex(hash);
+        // Two-character fan-out keeps directories small
+        return new File(new File(chunkDir, hex.substring(0, 2)), hex);
+    }
+
+    private File manifestFile(String fileName) throws IOException {
+        File manifestFile = new File(manifestDir, fileName + ".manifest");
+        manifestDir.mkdirs();
+        FileValidator.validateFileName(manifestDir, manifestFile, fileName);
+        return manifestFile;
+    }
+}
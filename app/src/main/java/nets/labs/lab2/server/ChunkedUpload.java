@@ -0,0 +1,144 @@
+package nets.labs.lab2.server;
+
+import lombok.Getter;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// One file received as several byte ranges over parallel connections
+@Getter
+class ChunkedUpload {
+    private final long transferId;
+    private final UploadCoordinator.PendingUpload pending;
+    private final String fileName;
+    private final long fileSize;
+    private final int streamCount;
+    private final AtomicLong totalBytes = new AtomicLong(0);
+    private final AtomicInteger finishedStreams = new AtomicInteger(0);
+    private final CompletableFuture<Void> completion = new CompletableFuture<>();
+    // Claimed ranges by offset -> end; the streams must tile the file exactly
+    private final TreeMap<Long, Long> ranges = new TreeMap<>();
+    private final FileChannel fileChannel;
+    private final DurabilityManager durability;
+    private final Runnable onFinish;
+    private TransferMetrics.Transfer transfer;
+
+    ChunkedUpload(long transferId, UploadCoordinator.PendingUpload pending, String fileName, long fileSize, int streamCount,
+            DurabilityManager durability, Runnable onFinish) throws IOException {
+        this.transferId = transferId;
+        this.pending = pending;
+        this.fileName = fileName;
+        this.fileSize = fileSize;
+        this.streamCount = streamCount;
+        this.durability = durability;
+        this.onFinish = onFinish;
+
+        // Reserve the full size up front so every stream can write at its own offset
+        RandomAccessFile file = new RandomAccessFile(pending.getTempFile(), "rw");
+        try {
+            file.setLength(fileSize);
+        } catch (IOException e) {
+            file.close();
+            throw e;
+        }
+        this.fileChannel = file.getChannel();
+    }
+
+    // Called by each stream before its payload; a range overlapping another stream's would leave a hole elsewhere
+    void claimRange(long offset, long length) throws IOException {
+        if (length == 0) return;
+        long end = offset + length;
+        synchronized (ranges) {
+            Map.Entry<Long, Long> before = ranges.floorEntry(offset);
+            Map.Entry<Long, Long> after = ranges.ceilingEntry(offset);
+            if ((before != null && before.getValue() > offset) || (after != null && after.getKey() < end)) {
+                throw new IOException("Range [" + offset + ", " + end + ") overlaps another stream of transfer " + transferId);
+            }
+            ranges.put(offset, end);
+        }
+    }
+
+    // The whole file is one transfer in the metrics, attributed to the client that opened the first stream
+    void trackWith(TransferMetrics metrics, String client) {
+        this.transfer = metrics.register(fileName, client, fileSize, totalBytes);
+    }
+
+    void write(ByteBuffer buffer, long position) throws IOException {
+        pending.getDevice().write(() -> {
+            long offset = position;
+            while (buffer.hasRemaining()) {
+                int written = fileChannel.write(buffer, offset);
+                offset += written;
+                totalBytes.addAndGet(written);
+            }
+            return offset - position;
+        });
+    }
+
+    void finishStream() {
+        if (finishedStreams.incrementAndGet() < streamCount) return;
+        try {
+            fileChannel.close();
+            FileValidator.validateFileSize(fileSize, totalBytes.get());
+            validateCoverage();
+            // The last stream pays for the sync; the others are still waiting in awaitCompletion
+            durability.commit(pending.publish());
+            if (completion.complete(null)) release();
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    private void validateCoverage() throws IOException {
+        long covered = 0;
+        synchronized (ranges) {
+            for (Map.Entry<Long, Long> range : ranges.entrySet()) {
+                if (range.getKey() != covered) break;
+                covered = range.getValue();
+            }
+        }
+        if (covered != fileSize) throw new IOException("Transfer " + transferId + " is missing bytes from offset " + covered);
+    }
+
+    void fail(Exception cause) {
+        if (completion.completeExceptionally(cause)) {
+            try {
+                fileChannel.close();
+            } catch (IOException ignored) {}
+            pending.abort();
+            release();
+        }
+    }
+
+    // Waits for the remaining streams; gives up once no stream has made progress for CHUNK_STALL_TIMEOUT_MS
+    void awaitCompletion() throws IOException, InterruptedException {
+        long lastTotal = -1;
+        while (true) {
+            try {
+                completion.get(Constants.CHUNK_STALL_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+                return;
+            } catch (TimeoutException e) {
+                long currentTotal = totalBytes.get();
+                if (currentTotal == lastTotal) fail(new IOException("Chunked upload stalled: " + finishedStreams.get() + " of " + streamCount + " streams finished"));
+                lastTotal = currentTotal;
+            } catch (ExecutionException e) {
+                throw new IOException(e.getCause().getMessage(), e.getCause());
+            }
+        }
+    }
+
+    private void release() {
+        if (transfer != null) transfer.close();
+        onFinish.run();
+    }
+}
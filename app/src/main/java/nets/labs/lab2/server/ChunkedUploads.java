@@ -0,0 +1,50 @@
+package nets.labs.lab2.server;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+class ChunkedUploads {
+    private final Map<Long, ChunkedUpload> transfers = new ConcurrentHashMap<>();
+    private final TransferMetrics metrics;
+    private final DurabilityManager durability;
+    private final UploadCoordinator uploads;
+
+    ChunkedUploads(TransferMetrics metrics, DurabilityManager durability, UploadCoordinator uploads) {
+        this.metrics = metrics;
+        this.durability = durability;
+        this.uploads = uploads;
+    }
+
+    ChunkedUpload join(long transferId, String fileName, long fileSize, int streamCount, String client) throws IOException {
+        ChunkedUpload joined;
+        try {
+            joined = transfers.computeIfAbsent(transferId, id -> {
+                try {
+                    // One claim per transfer, however many streams carry it
+                    UploadCoordinator.PendingUpload pending = uploads.begin(fileName);
+                    try {
+                        ChunkedUpload upload = new ChunkedUpload(id, pending, fileName, fileSize, streamCount, durability, () -> transfers.remove(id));
+                        upload.trackWith(metrics, client);
+                        return upload;
+                    } catch (IOException e) {
+                        pending.abort();
+                        throw e;
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        if (!joined.getFileName().equals(fileName) || joined.getFileSize() != fileSize || joined.getStreamCount() != streamCount) {
+            throw new IOException("Chunk header does not match transfer " + transferId + " for file '" + joined.getFileName() + "'");
+        }
+        // One writer slot for the whole file, taken by whichever stream gets here first
+        joined.getPending().schedule();
+        return joined;
+    }
+}
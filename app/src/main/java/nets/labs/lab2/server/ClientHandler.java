@@ -3,66 +3,69 @@ package nets.labs.lab2.server;
 import lombok.Data;
 import java.io.*;
 import java.net.Socket;
-import java.nio.charset.StandardCharsets;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
 
 @Data
 class ClientHandler implements Runnable {
     private final Socket clientSocket;
-    private volatile boolean isCompleted = false;
+    private final ServerConfig config;
+    private final ServerContext context;
     private AtomicLong totalBytes = new AtomicLong(0);
-    private long startTimestamp;
-    private Thread speedThread;
+    private AtomicLong wireBytes = new AtomicLong(0);
+    private TransferMetrics.Transfer transfer;
     private String fileName;
+    private String clientAddress;
+
+    private boolean admitted;
 
     @Override
     public void run() {
+        long startNanos = System.nanoTime();
         try {
+            context.getSocketTuning().applyToAccepted(clientSocket);
+            admitted = context.getAdmission().admit();
+            if (!admitted) {
+                reject();
+                return;
+            }
+
             DataInputStream input = new DataInputStream(clientSocket.getInputStream());
 
-            // Read and validate file name
-            int fileNameLength = input.readInt();
-            FileValidator.validateFileNameLength(fileNameLength);
-            
-            byte[] fileNameBytes = new byte[fileNameLength];
-            input.readFully(fileNameBytes);
-            String fileName = new String(fileNameBytes, StandardCharsets.UTF_8);
-            this.fileName = fileName;
-
-            long fileSize = input.readLong();
-            this.startTimestamp = System.currentTimeMillis();
-            this.totalBytes.set(0);
-
-            // Start speed monitoring
-            speedThread = new Thread(new SpeedMonitor(totalBytes, isCompleted, startTimestamp, fileName));
-            speedThread.setDaemon(true);
-            speedThread.start();
-
-            // Prepare file for writing
-            File uploadsDir = new File(Constants.UPLOADS_DIR);
-            uploadsDir.mkdirs();
-            File targetFile = new File(uploadsDir, fileName);
-            FileValidator.validateFileName(uploadsDir, targetFile, fileName);
-
-            // Write file data
-            try (FileOutputStream fos = new FileOutputStream(targetFile)) {
-                byte[] buffer = new byte[Constants.BUFFER_SIZE];
-                long remaining = fileSize;
-
-                while (remaining > 0) {
-                    int toRead = (int) Math.min(buffer.length, remaining);
-                    int bytesRead = input.read(buffer, 0, toRead);
-                    if (bytesRead == -1) throw new IOException("Unexpected end of stream before receiving all data");
-                    fos.write(buffer, 0, bytesRead);
-                    totalBytes.addAndGet(bytesRead);
-                    remaining -= bytesRead;
+            int header = input.readInt();
+            if (header == Constants.PROTOCOL_MAGIC) {
+                byte requestType = input.readByte();
+                switch (requestType) {
+                    case Constants.REQUEST_CHUNK -> handleChunk(input);
+                    case Constants.REQUEST_RESUME -> handleResume(input);
+                    case Constants.REQUEST_UPLOAD -> handleUpload(input, input.readInt(), true);
+                    case Constants.REQUEST_MULTIPLEX -> handleMultiplex(input);
+                    case Constants.REQUEST_DEDUP -> handleDedup(input);
+                    case Constants.REQUEST_DOWNLOAD -> handleDownload(input);
+                    default -> throw new IOException("Unknown request type: " + requestType);
                 }
+            } else {
+                handleUpload(input, header, false);
             }
 
-            FileValidator.validateFileSize(fileSize, totalBytes.get());
-
             clientSocket.getOutputStream().write(Constants.RESPONSE_SUCCESS);
-            isCompleted = true;
+            reportThroughput(startNanos);
 
         } catch (Exception e) {
             System.err.println("Error handling client " + clientSocket.getInetAddress() + " for file '" + fileName + "': " + e.getMessage());
@@ -71,18 +74,511 @@ class ClientHandler implements Runnable {
             } catch (IOException ex) {
                 // Ignore secondary exception
             }
-            isCompleted = true;
         } finally {
-            if (speedThread != null && speedThread.isAlive()) {
-                speedThread.interrupt();
-                try {
-                    speedThread.join(Constants.JOIN_TIMEOUT_MS);
-                } catch (InterruptedException ignored) {}
-            }
+            releaseAdmission();
+            if (transfer != null) transfer.close();
 
             try {
                 clientSocket.close();
             } catch (IOException ignored) {}
         }
     }
-}
\ No newline at end of file
+
+    private void reportThroughput(long startNanos) {
+        double seconds = Math.max(1e-9, (System.nanoTime() - startNanos) / 1e9);
+        System.out.printf("Client %s: %d bytes in %.2f s, %.2f MB/s (%s)%n", clientSocket.getInetAddress(), totalBytes.get(),
+                seconds, totalBytes.get() / seconds / Constants.BYTES_TO_MEGABYTES_DIVISOR,
+                context.getSocketTuning().describe(clientSocket));
+    }
+
+    // Answers RESPONSE_BUSY before the header is read, then drains briefly so the close does not reset the answer away.
+    // The drain is bounded in time and bytes: a client streaming its payload regardless only gets a reset.
+    private void reject() {
+        System.err.println("Rejecting client " + clientSocket.getInetAddress() + ": too many queued transfers");
+        try {
+            clientSocket.getOutputStream().write(Constants.RESPONSE_BUSY);
+            clientSocket.shutdownOutput();
+            InputStream input = clientSocket.getInputStream();
+            byte[] discard = new byte[Constants.BUFFER_SIZE];
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(Constants.REJECT_DRAIN_TIMEOUT_MS);
+            long drained = 0;
+            while (drained < Constants.REJECT_DRAIN_MAX_BYTES) {
+                long remainingMillis = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                if (remainingMillis <= 0) break;
+                clientSocket.setSoTimeout((int) remainingMillis);
+                int read = input.read(discard);
+                // The client noticed the answer and closed
+                if (read == -1) break;
+                drained += read;
+            }
+        } catch (IOException ignored) {
+            // Client already gone or drain timed out
+        }
+    }
+
+    // Idempotent; a chunk stream gives its slot back before waiting for the other streams of its file
+    private void releaseAdmission() {
+        if (admitted) {
+            admitted = false;
+            context.getAdmission().release();
+        }
+    }
+
+    // Plain v1 upload, or REQUEST_UPLOAD which adds options after the file size
+    private void handleUpload(DataInputStream input, int fileNameLength, boolean withOptions) throws IOException {
+        UploadHeader header = UploadHeader.read(input, fileNameLength, withOptions);
+        String fileName = header.getFileName();
+        this.fileName = fileName;
+        long fileSize = header.getFileSize();
+        UploadOptions options = header.getOptions();
+        boolean compressed = options.getCompressionType() != CompressionType.NONE;
+        trackTransfer(fileName, fileSize, compressed);
+
+        UploadCoordinator.PendingUpload pending = context.getUploads().begin(fileName);
+        ProgressReporter progress = options.isProgress()
+                ? new ProgressReporter(context.getMetrics(), transfer, clientSocket.getOutputStream()) : null;
+        try {
+            pending.schedule();
+            File tempFile = pending.getTempFile();
+            StorageDevice device = pending.getDevice();
+            ChecksumType checksumType = options.getChecksumType();
+            PayloadDigest digest = checksumType.newDigest();
+
+            // Write file data; transferFrom bypasses the copy loop, so it only applies to raw payloads without a checksum
+            SocketChannel socketChannel = clientSocket.getChannel();
+            if (compressed) {
+                receiveCompressed(input, tempFile, device, fileSize, digest);
+            } else if (config.isZeroCopy() && socketChannel != null && checksumType == ChecksumType.NONE) {
+                receiveWithTransferFrom(socketChannel, tempFile, device, fileSize);
+            } else {
+                receiveToFile(input, tempFile, device, fileSize, digest);
+            }
+
+            FileValidator.validateFileSize(fileSize, totalBytes.get());
+
+            if (checksumType != ChecksumType.NONE) {
+                byte[] expected = new byte[checksumType.getDigestLength()];
+                input.readFully(expected);
+                FileValidator.validateChecksum(checksumType, expected, digest.finish());
+            }
+
+            context.getDurability().commit(pending.publish());
+        } finally {
+            // The last frame must be out before run() writes the final response
+            if (progress != null) progress.close();
+            pending.abort();
+        }
+
+        if (compressed) {
+            System.out.printf("File '%s': %d bytes received as %d wire bytes (%.1f%%)%n",
+                    fileName, totalBytes.get(), wireBytes.get(), fileSize == 0 ? 100.0 : 100.0 * wireBytes.get() / fileSize);
+        }
+    }
+
+    // Chunk request: transferId, name length, name, file size, stream count, range offset, range length, payload
+    private void handleChunk(DataInputStream input) throws IOException, InterruptedException {
+        long transferId = input.readLong();
+        String fileName = readFileName(input, input.readInt());
+        long fileSize = input.readLong();
+        int streamCount = input.readInt();
+        long offset = input.readLong();
+        long length = input.readLong();
+        FileValidator.validateChunk(fileSize, streamCount, offset, length);
+
+        ChunkedUpload upload = context.getChunkedUploads().join(transferId, fileName, fileSize, streamCount, clientAddress());
+
+        try {
+            upload.claimRange(offset, length);
+            long[] position = {offset};
+            receive(input, length, data -> {
+                int bytes = data.remaining();
+                upload.write(data, position[0]);
+                position[0] += bytes;
+            });
+        } catch (IOException e) {
+            upload.fail(e);
+            throw e;
+        }
+
+        upload.finishStream();
+        // Every stream answers only once the whole file has been assembled. Waiting streams hold no slot,
+        // otherwise one parallel upload could fill every slot and starve its own remaining streams.
+        releaseAdmission();
+        upload.awaitCompletion();
+    }
+
+    // Resume request: transferId, name length, name, file size; server answers with the offset to continue from
+    private void handleResume(DataInputStream input) throws IOException {
+        long transferId = input.readLong();
+        String fileName = readFileName(input, input.readInt());
+        long fileSize = input.readLong();
+        if (fileSize < 0) throw new IllegalArgumentException("Invalid file size: " + fileSize);
+
+        StorageDevice device = context.getStorage().deviceFor(fileName);
+        try (UploadJournal journal = UploadJournal.open(device.getPartialDir(), transferId, fileName, fileSize)) {
+            // The partial file outlives a failed connection so the next one can continue it
+            UploadCoordinator.PendingUpload pending = context.getUploads().adopt(fileName, journal.getPartialFile());
+            try {
+                pending.schedule();
+                receiveResumable(input, journal, device, fileName, fileSize);
+                context.getDurability().commit(pending.publish());
+                journal.complete();
+            } finally {
+                pending.abort();
+            }
+        }
+    }
+
+    private void receiveResumable(DataInputStream input, UploadJournal journal, StorageDevice device, String fileName, long fileSize) throws IOException {
+        long offset = journal.getConfirmedOffset();
+
+        DataOutputStream output = new DataOutputStream(clientSocket.getOutputStream());
+        output.writeLong(offset);
+        output.flush();
+        if (offset > 0) System.out.println("Resuming file '" + fileName + "' from offset " + offset);
+
+        trackTransfer(fileName, fileSize - offset);
+
+        try (FileChannel fileChannel = FileChannel.open(journal.getPartialFile().toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            // Anything past the confirmed offset may not have reached the disk intact
+            fileChannel.truncate(offset);
+            fileChannel.position(offset);
+
+            long[] position = {offset};
+            long[] lastConfirmed = {offset};
+            receive(input, fileSize - offset, data -> {
+                device.write(() -> writeFully(fileChannel, data));
+                position[0] = fileChannel.position();
+                if (position[0] - lastConfirmed[0] >= Constants.JOURNAL_SYNC_INTERVAL_BYTES) {
+                    fileChannel.force(false);
+                    journal.confirm(position[0]);
+                    lastConfirmed[0] = position[0];
+                }
+            });
+        }
+
+        FileValidator.validateFileSize(fileSize, offset + totalBytes.get());
+    }
+
+    // Multiplexed request: a sequence of (frame type, stream id, body) frames until FRAME_CLOSE.
+    // Each FRAME_END is answered with an ACK frame as soon as that file is complete.
+    private void handleMultiplex(DataInputStream input) throws IOException {
+        DataOutputStream output = new DataOutputStream(new BufferedOutputStream(clientSocket.getOutputStream()));
+        Map<Integer, MultiplexStream> streams = new HashMap<>();
+
+        try {
+            while (true) {
+                // Only push pending acks out when the client has nothing more queued for us
+                if (input.available() == 0) output.flush();
+
+                byte frameType = input.readByte();
+                int streamId = input.readInt();
+                switch (frameType) {
+                    case Constants.FRAME_OPEN -> {
+                        String fileName = readFileName(input, input.readInt());
+                        long fileSize = input.readLong();
+                        if (streams.containsKey(streamId)) throw new IOException("Stream " + streamId + " is already open");
+                        if (streams.size() >= Constants.MAX_MULTIPLEX_STREAMS) throw new IOException("Too many open streams");
+                        streams.put(streamId, openMultiplexStream(fileName, fileSize));
+                    }
+                    case Constants.FRAME_DATA -> {
+                        int length = input.readInt();
+                        if (length < 0 || length > Constants.MAX_FRAME_DATA_SIZE) throw new IOException("Invalid frame length: " + length);
+                        MultiplexStream stream = streams.get(streamId);
+                        if (stream == null) throw new IOException("Data for unknown stream " + streamId);
+                        receive(input, length, stream::write);
+                    }
+                    case Constants.FRAME_END -> {
+                        MultiplexStream stream = streams.remove(streamId);
+                        if (stream == null) throw new IOException("End of unknown stream " + streamId);
+                        output.writeByte(Constants.FRAME_ACK);
+                        output.writeInt(streamId);
+                        output.writeByte(stream.finish(context.getDurability()));
+                    }
+                    case Constants.FRAME_CLOSE -> {
+                        if (!streams.isEmpty()) throw new IOException(streams.size() + " streams left open at close");
+                        output.flush();
+                        return;
+                    }
+                    default -> throw new IOException("Unknown frame type: " + frameType);
+                }
+            }
+        } finally {
+            streams.values().forEach(MultiplexStream::abort);
+        }
+    }
+
+    // Dedup request: name length, name, file size, chunk count, then (length, SHA-256) per chunk.
+    // Server answers with the indices of chunks it lacks, and the client sends only those chunks' bytes.
+    private void handleDedup(DataInputStream input) throws IOException {
+        String fileName = readFileName(input, input.readInt());
+        long fileSize = input.readLong();
+        int chunkCount = input.readInt();
+        FileValidator.validateDedupChunkCount(fileSize, chunkCount);
+
+        ChunkStore chunkStore = context.getChunkStore();
+        List<ChunkManifest.ChunkRef> chunks = new ArrayList<>(chunkCount);
+        List<Integer> missing = new ArrayList<>();
+        Set<String> requested = new HashSet<>();
+        long declaredSize = 0;
+        long missingBytes = 0;
+        for (int i = 0; i < chunkCount; i++) {
+            int length = input.readInt();
+            FileValidator.validateDedupChunkLength(length);
+            byte[] hash = new byte[ChecksumType.SHA256.getDigestLength()];
+            input.readFully(hash);
+            chunks.add(new ChunkManifest.ChunkRef(length, hash));
+            declaredSize += length;
+
+            // A chunk repeated inside the same file is only requested once
+            if (!chunkStore.contains(hash) && requested.add(HexFormat.of().formatHex(hash))) {
+                missing.add(i);
+                missingBytes += length;
+            }
+        }
+        FileValidator.validateFileSize(fileSize, declaredSize);
+
+        DataOutputStream output = new DataOutputStream(new BufferedOutputStream(clientSocket.getOutputStream()));
+        output.writeInt(missing.size());
+        for (int index : missing) {
+            output.writeInt(index);
+        }
+        output.flush();
+
+        trackTransfer(fileName, missingBytes);
+        List<File> durableFiles = new ArrayList<>();
+        for (int index : missing) {
+            ChunkManifest.ChunkRef chunk = chunks.get(index);
+            byte[] data = new byte[chunk.getLength()];
+            int[] position = {0};
+            receive(input, data.length, buffer -> {
+                int bytes = buffer.remaining();
+                buffer.get(data, position[0], bytes);
+                position[0] += bytes;
+            });
+            durableFiles.add(chunkStore.put(chunk.getHash(), data));
+        }
+        FileValidator.validateFileSize(missingBytes, totalBytes.get());
+
+        ChunkManifest manifest = new ChunkManifest(fileSize, chunks);
+        String storedName = fileName;
+        if (config.isDedupMaterialize()) {
+            // Chunks are content-addressed and safe to share; only the rebuilt file needs a claim on the name
+            UploadCoordinator.PendingUpload pending = context.getUploads().begin(fileName);
+            try {
+                chunkStore.rebuild(manifest, pending.getTempFile());
+                durableFiles.add(pending.publish());
+                // A versioned copy gets its own manifest, so the original name keeps pointing at the original content
+                storedName = pending.getStoredName();
+            } finally {
+                pending.abort();
+            }
+        }
+        durableFiles.add(chunkStore.saveManifest(storedName, manifest));
+        context.getDurability().commit(durableFiles);
+
+        System.out.println("Deduplicated file '" + fileName + "': received " + missing.size() + " of " + chunkCount
+                + " chunks, " + missingBytes + " of " + fileSize + " bytes");
+    }
+
+    // Download request: name length, name, range offset, range length (RANGE_TO_END for the rest of the file).
+    // Answer: RESPONSE_SUCCESS, file size, range length, the range itself; the final response byte confirms it was sent whole.
+    private void handleDownload(DataInputStream input) throws IOException {
+        String fileName = readFileName(input, input.readInt());
+        long offset = input.readLong();
+        long length = input.readLong();
+
+        File sourceFile = context.getStorage().resolve(fileName);
+        // Deduplicated uploads kept only as a manifest are reassembled on first download
+        if (!sourceFile.isFile()) {
+            if (!context.getChunkStore().hasManifest(fileName)) throw new FileNotFoundException("No such file: " + fileName);
+            context.getChunkStore().rebuild(fileName, sourceFile);
+        }
+
+        try (FileChannel fileChannel = FileChannel.open(sourceFile.toPath(), StandardOpenOption.READ)) {
+            long fileSize = fileChannel.size();
+            if (length == Constants.RANGE_TO_END) length = Math.max(0, fileSize - offset);
+            FileValidator.validateRange(fileSize, offset, length);
+
+            DataOutputStream output = new DataOutputStream(clientSocket.getOutputStream());
+            output.writeByte(Constants.RESPONSE_SUCCESS);
+            output.writeLong(fileSize);
+            output.writeLong(length);
+            output.flush();
+
+            trackTransfer(fileName, length);
+            SocketChannel socketChannel = clientSocket.getChannel();
+            WritableByteChannel target = socketChannel != null ? socketChannel : Channels.newChannel(clientSocket.getOutputStream());
+
+            // transferTo is sendfile on Linux; bounded chunks keep metrics and shaping current
+            long position = offset;
+            long end = offset + length;
+            while (position < end) {
+                int sendLimit = context.getShaper().readLimit(clientAddress(), (int) Constants.TRANSFER_CHUNK_SIZE);
+                long sent = fileChannel.transferTo(position, Math.min(sendLimit, end - position), target);
+                if (sent == 0) throw new IOException("File '" + fileName + "' shrank during download");
+                context.getShaper().throttle(clientAddress(), sent);
+                totalBytes.addAndGet(sent);
+                position += sent;
+            }
+        }
+    }
+
+    private MultiplexStream openMultiplexStream(String fileName, long fileSize) {
+        try {
+            if (fileSize < 0) throw new IllegalArgumentException("Invalid file size: " + fileSize);
+            // Not scheduled: its files interleave on one connection, so waiting for a slot held by a sibling would deadlock
+            UploadCoordinator.PendingUpload pending = context.getUploads().begin(fileName);
+            return new MultiplexStream(fileName, pending, fileSize, context.getMetrics(), clientAddress());
+        } catch (Exception e) {
+            return MultiplexStream.failed(fileName, e);
+        }
+    }
+
+    private void trackTransfer(String fileName, long expectedBytes) {
+        trackTransfer(fileName, expectedBytes, false);
+    }
+
+    // Compressed uploads count socket bytes separately; otherwise wire and file bytes are the same counter
+    private void trackTransfer(String fileName, long expectedBytes, boolean compressed) {
+        totalBytes.set(0);
+        wireBytes.set(0);
+        transfer = context.getMetrics().register(fileName, clientAddress(), expectedBytes, totalBytes,
+                compressed ? wireBytes : totalBytes);
+    }
+
+    private String clientAddress() {
+        if (clientAddress == null) clientAddress = clientSocket.getInetAddress().getHostAddress();
+        return clientAddress;
+    }
+
+    private String readFileName(DataInputStream input, int fileNameLength) throws IOException {
+        this.fileName = UploadHeader.readFileName(input, fileNameLength);
+        return fileName;
+    }
+
+    private void receiveToFile(DataInputStream input, File targetFile, StorageDevice device, long fileSize, PayloadDigest digest) throws IOException {
+        try (UploadFileWriter writer = UploadFileWriter.open(targetFile, device, fileSize, config, context.getDurability().periodicSyncBytes())) {
+            receive(input, fileSize, data -> {
+                digest.update(data.duplicate());
+                writer.write(data);
+            });
+        }
+    }
+
+    // Compressed payload: (block type, raw length, wire length, block) until fileSize raw bytes are written.
+    // Blocks are independent, so each one is inflated on its own and written before the next is read.
+    private void receiveCompressed(DataInputStream input, File targetFile, StorageDevice device, long fileSize, PayloadDigest digest) throws IOException {
+        Inflater inflater = new Inflater();
+        byte[] wire = new byte[Constants.COMPRESSION_BLOCK_SIZE];
+        byte[] raw = new byte[Constants.COMPRESSION_BLOCK_SIZE];
+
+        try (UploadFileWriter writer = UploadFileWriter.open(targetFile, device, fileSize, config, context.getDurability().periodicSyncBytes())) {
+            long written = 0;
+            while (written < fileSize) {
+                byte blockType = input.readByte();
+                int rawLength = input.readInt();
+                int wireLength = input.readInt();
+                wireBytes.addAndGet(1 + 2 * Integer.BYTES);
+                FileValidator.validateCompressedBlock(blockType, rawLength, wireLength, fileSize - written);
+
+                if (blockType == Constants.BLOCK_RAW) {
+                    receive(input, rawLength, wireBytes, data -> {
+                        digest.update(data.duplicate());
+                        writer.write(data);
+                    });
+                } else {
+                    int[] position = {0};
+                    receive(input, wireLength, wireBytes, data -> {
+                        int bytes = data.remaining();
+                        data.get(wire, position[0], bytes);
+                        position[0] += bytes;
+                    });
+                    inflate(inflater, wire, wireLength, raw, rawLength);
+                    digest.update(raw, 0, rawLength);
+                    writer.write(ByteBuffer.wrap(raw, 0, rawLength));
+                }
+                totalBytes.addAndGet(rawLength);
+                written += rawLength;
+            }
+        } catch (IOException e) {
+            targetFile.delete();
+            throw e;
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private static void inflate(Inflater inflater, byte[] wire, int wireLength, byte[] raw, int rawLength) throws IOException {
+        inflater.reset();
+        inflater.setInput(wire, 0, wireLength);
+        try {
+            int inflated = inflater.inflate(raw, 0, rawLength);
+            if (inflated != rawLength || !inflater.finished()) throw new IOException("Compressed block does not match its declared length");
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupt compressed block: " + e.getMessage());
+        }
+    }
+
+    private void receive(DataInputStream input, long length, PayloadSink sink) throws IOException {
+        receive(input, length, totalBytes, sink);
+    }
+
+    // Reads exactly length payload bytes into a pooled, adaptively sized buffer and hands each read to sink
+    private void receive(DataInputStream input, long length, AtomicLong counter, PayloadSink sink) throws IOException {
+        SocketChannel socketChannel = clientSocket.getChannel();
+        ReadableByteChannel source = socketChannel != null ? socketChannel : Channels.newChannel(input);
+
+        try (AdaptiveBuffer adaptiveBuffer = new AdaptiveBuffer(context.getBufferPool())) {
+            long remaining = length;
+            while (remaining > 0) {
+                ByteBuffer buffer = adaptiveBuffer.buffer();
+                int readLimit = context.getShaper().readLimit(clientAddress(), buffer.capacity());
+                buffer.clear().limit((int) Math.min(readLimit, remaining));
+                int bytesRead = source.read(buffer);
+                if (bytesRead == -1) throw new IOException("Unexpected end of stream before receiving all data");
+                context.getShaper().throttle(clientAddress(), bytesRead);
+                buffer.flip();
+                sink.accept(buffer);
+                counter.addAndGet(bytesRead);
+                remaining -= bytesRead;
+                adaptiveBuffer.onRead(bytesRead);
+            }
+        }
+    }
+
+    private static int writeFully(FileChannel fileChannel, ByteBuffer data) throws IOException {
+        int bytes = data.remaining();
+        while (data.hasRemaining()) {
+            fileChannel.write(data);
+        }
+        return bytes;
+    }
+
+    private void receiveWithTransferFrom(SocketChannel socketChannel, File targetFile, StorageDevice device, long fileSize) throws IOException {
+        try (FileChannel fileChannel = FileChannel.open(targetFile.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            long position = 0;
+
+            // Bounded chunks keep totalBytes moving for the metrics sampler
+            while (position < fileSize) {
+                int readLimit = context.getShaper().readLimit(clientAddress(), (int) Constants.TRANSFER_CHUNK_SIZE);
+                long count = Math.min(readLimit, fileSize - position);
+                long start = position;
+                long[] transferredBytes = {0};
+                device.write(() -> transferredBytes[0] = fileChannel.transferFrom(socketChannel, start, count));
+                long transferred = transferredBytes[0];
+                if (transferred == 0) throw new IOException("Unexpected end of stream before receiving all data");
+                context.getShaper().throttle(clientAddress(), transferred);
+                totalBytes.addAndGet(transferred);
+                position += transferred;
+            }
+        }
+    }
+
+    // Consumes one buffer of received payload; the buffer is reused after the call returns
+    private interface PayloadSink {
+        void accept(ByteBuffer data) throws IOException;
+    }
+}
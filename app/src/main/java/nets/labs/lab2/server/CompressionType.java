@@ -0,0 +1,24 @@
+package nets.labs.lab2.server;
+
+// Payload encoding of a REQUEST_UPLOAD; DEFLATE sends the file as independently deflated or raw blocks
+public enum CompressionType {
+    NONE(0),
+    DEFLATE(1);
+
+    private final byte id;
+
+    CompressionType(int id) {
+        this.id = (byte) id;
+    }
+
+    public byte getId() {
+        return id;
+    }
+
+    public static CompressionType fromId(byte id) {
+        for (CompressionType type : values()) {
+            if (type.id == id) return type;
+        }
+        throw new IllegalArgumentException("Unknown compression type: " + id);
+    }
+}
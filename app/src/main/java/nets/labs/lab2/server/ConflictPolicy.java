@@ -0,0 +1,11 @@
+package nets.labs.lab2.server;
+
+// What happens when an upload targets a file name that another upload is using or has already stored
+public enum ConflictPolicy {
+    // Every upload succeeds; the one that finishes last replaces the others
+    LAST_WRITER_WINS,
+    // An upload of a name that another upload is still receiving fails right away
+    REJECT,
+    // An upload that would replace an existing file is stored as "name (1).ext", "name (2).ext", ...
+    VERSION_SUFFIX
+}
@@ -2,13 +2,93 @@ package nets.labs.lab2.server;
 
 public final class Constants {
     public static final int SPEED_MONITOR_INTERVAL_MS = 1000;
+    public static final double METRICS_EWMA_ALPHA = 0.3;
     public static final int MAX_FILENAME_LENGTH = 4096;
     public static final int BUFFER_SIZE = 8192;
+    public static final long TRANSFER_CHUNK_SIZE = 1024 * 1024;
+    public static final int MAX_ADAPTIVE_BUFFER_SIZE = 1024 * 1024;
+    public static final long DEFAULT_BUFFER_POOL_BYTES = 256L * 1024 * 1024;
+    public static final int ADAPTIVE_GROW_AFTER_READS = 4;
+    public static final int ADAPTIVE_SHRINK_AFTER_READS = 16;
     public static final String UPLOADS_DIR = "uploads";
+    public static final long DEFAULT_PREALLOCATE_THRESHOLD_BYTES = 16L * 1024 * 1024;
+    public static final int DEFAULT_WRITE_WINDOW_BYTES = 64 * 1024 * 1024;
+    public static final long DEFAULT_DURABILITY_SYNC_INTERVAL_BYTES = 64L * 1024 * 1024;
     public static final int JOIN_TIMEOUT_MS = 1000;
+    public static final int SHUTDOWN_TIMEOUT_MS = 5000;
+    public static final int DEFAULT_MAX_IN_FLIGHT_HANDLERS = 10_000;
     public static final double BYTES_TO_MEGABYTES_DIVISOR = 1024 * 1024;
     public static final byte RESPONSE_SUCCESS = 1;
     public static final byte RESPONSE_FAILURE = 0;
+    public static final byte RESPONSE_BUSY = 2;
+    // Progress frame sent ahead of the final response: bytes written, instantaneous bytes/s, ETA in ms (-1 unknown)
+    public static final byte RESPONSE_PROGRESS = 3;
+    public static final int DEFAULT_MAX_CONCURRENT_TRANSFERS = 64;
+    public static final int DEFAULT_MAX_QUEUED_TRANSFERS = 1024;
+    // A rejected client gets this long in total, and this many bytes, to notice the answer before the close
+    public static final int REJECT_DRAIN_TIMEOUT_MS = 1000;
+    public static final int REJECT_DRAIN_MAX_BYTES = 256 * 1024;
+    public static final double SHAPING_BURST_SECONDS = 0.5;
+    public static final double SHAPING_READ_SECONDS = 0.1;
+    // How often per-client buckets that have refilled completely are dropped
+    public static final int SHAPING_PRUNE_INTERVAL_MS = 10_000;
+    // Extended requests start with this marker instead of a file name length (never a valid length)
+    public static final int PROTOCOL_MAGIC = 0x4C324654;
+    public static final byte REQUEST_CHUNK = 1;
+    public static final byte REQUEST_RESUME = 2;
+    public static final byte REQUEST_UPLOAD = 3;
+    public static final byte REQUEST_MULTIPLEX = 4;
+    public static final byte REQUEST_DEDUP = 5;
+    public static final byte REQUEST_DOWNLOAD = 6;
+    // Range length of a download request meaning "up to the end of the file"
+    public static final long RANGE_TO_END = -1;
+    public static final byte OPTION_CHECKSUM = 1;
+    public static final byte OPTION_COMPRESSION = 2;
+    public static final byte OPTION_PROGRESS = 3;
+    public static final byte BLOCK_RAW = 0;
+    public static final byte BLOCK_DEFLATE = 1;
+    public static final int COMPRESSION_BLOCK_SIZE = 128 * 1024;
+    public static final int COMPRESSION_LEVEL = 1;
+    // A block is sent deflated only if it shrinks below this fraction of its size
+    public static final double COMPRESSION_MAX_RATIO = 0.9;
+    public static final int COMPRESSION_MAX_SKIP_BLOCKS = 32;
+    public static final byte FRAME_OPEN = 1;
+    public static final byte FRAME_DATA = 2;
+    public static final byte FRAME_END = 3;
+    public static final byte FRAME_CLOSE = 4;
+    public static final byte FRAME_ACK = 5;
+    public static final int MAX_FRAME_DATA_SIZE = 1024 * 1024;
+    public static final int MAX_MULTIPLEX_STREAMS = 256;
+    public static final int MULTIPLEX_FRAME_DATA_SIZE = 64 * 1024;
+    public static final int MULTIPLEX_ACTIVE_STREAMS = 8;
+    public static final int MULTIPLEX_UNACKED_STREAMS = 64;
+    public static final String CHUNK_STORE_DIR_NAME = ".chunks";
+    public static final String MANIFEST_DIR_NAME = ".manifests";
+    public static final String CHUNK_STORE_DIR = UPLOADS_DIR + "/" + CHUNK_STORE_DIR_NAME;
+    public static final String MANIFEST_DIR = UPLOADS_DIR + "/" + MANIFEST_DIR_NAME;
+    public static final int DEDUP_MIN_CHUNK_SIZE = 16 * 1024;
+    public static final int DEDUP_AVG_CHUNK_SIZE = 64 * 1024;
+    public static final int DEDUP_MAX_CHUNK_SIZE = 256 * 1024;
+    public static final int MAX_DEDUP_CHUNKS = 1 << 20;
+    public static final String DOWNLOAD_PART_SUFFIX = ".part";
+    public static final int MAX_PARALLEL_STREAMS = 64;
+    public static final int DEFAULT_PARALLEL_STREAMS = 4;
+    public static final int PIPELINE_BUFFER_SIZE = 256 * 1024;
+    public static final int DEFAULT_READ_AHEAD_DEPTH = 4;
+    public static final int CHUNK_STALL_TIMEOUT_MS = 30_000;
+    // Partial files of resumable uploads and temp files of uploads in progress, both inside every storage root
+    public static final String PARTIAL_DIR_NAME = ".partial";
+    public static final String INCOMING_DIR_NAME = ".incoming";
+    public static final int MAX_SHARD_DEPTH = 3;
+    public static final int UPLOAD_LOCK_STRIPES = 64;
+    public static final long JOURNAL_SYNC_INTERVAL_BYTES = 4 * 1024 * 1024;
+    public static final int RESUME_MAX_ATTEMPTS = 5;
+    public static final int RESUME_RETRY_DELAY_MS = 2000;
+    public static final int DEFAULT_EVENT_LOOP_THREADS = Math.max(1, Runtime.getRuntime().availableProcessors());
+    public static final int MAX_READS_PER_EVENT = 16;
+    // 1 Gbit/s
+    public static final long DEFAULT_LINK_BYTES_PER_SECOND = 125_000_000L;
+    public static final int MAX_TUNED_BUFFER_BYTES = 16 * 1024 * 1024;
     
     private Constants() {}
 }
\ No newline at end of file
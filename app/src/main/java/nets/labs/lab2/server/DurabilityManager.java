@@ -0,0 +1,156 @@
+package nets.labs.lab2.server;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+
+// Applies the configured DurabilityMode; handlers call commit before answering RESPONSE_SUCCESS
+class DurabilityManager {
+    private final DurabilityMode mode;
+    private final long syncIntervalBytes;
+    private final long groupCommitWindowMs;
+    private final BlockingQueue<SyncRequest> pending = new LinkedBlockingQueue<>();
+    // Runs fsyncs for callers that must not block, i.e. NIO event loops
+    private final ExecutorService asyncSyncs = Executors.newVirtualThreadPerTaskExecutor();
+    private Thread syncer;
+
+    DurabilityManager(ServerConfig config) {
+        this.mode = config.getDurability();
+        this.syncIntervalBytes = config.getDurabilitySyncIntervalBytes();
+        this.groupCommitWindowMs = config.getGroupCommitWindowMs();
+    }
+
+    synchronized void start() {
+        if (mode != DurabilityMode.GROUP_COMMIT || syncer != null) return;
+        syncer = Thread.ofPlatform().name("group-commit").daemon().start(this::runSyncer);
+    }
+
+    synchronized void stop() {
+        if (syncer == null) return;
+        syncer.interrupt();
+        syncer = null;
+        SyncRequest request;
+        while ((request = pending.poll()) != null) {
+            request.result.completeExceptionally(new IOException("Server is stopping"));
+        }
+    }
+
+    // Bytes between in-flight fsyncs of an upload, 0 when the mode does not sync while receiving
+    long periodicSyncBytes() {
+        return mode == DurabilityMode.PERIODIC ? syncIntervalBytes : 0;
+    }
+
+    void commit(File file) throws IOException {
+        commit(List.of(file));
+    }
+
+    void commit(Collection<File> files) throws IOException {
+        switch (mode) {
+            case NONE -> {}
+            case ON_COMPLETE, PERIODIC -> syncAll(files);
+            case GROUP_COMMIT -> {
+                try {
+                    enqueue(files).get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while waiting for group commit");
+                } catch (ExecutionException e) {
+                    throw new IOException("Group commit failed: " + e.getCause().getMessage(), e.getCause());
+                }
+            }
+        }
+    }
+
+    // Completes once the file is durable; already complete when the mode has nothing to do
+    CompletableFuture<Void> commitAsync(File file) {
+        List<File> files = List.of(file);
+        return switch (mode) {
+            case NONE -> CompletableFuture.completedFuture(null);
+            case ON_COMPLETE, PERIODIC -> CompletableFuture.runAsync(() -> {
+                try {
+                    syncAll(files);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }, asyncSyncs);
+            case GROUP_COMMIT -> enqueue(files);
+        };
+    }
+
+    private CompletableFuture<Void> enqueue(Collection<File> files) {
+        SyncRequest request = new SyncRequest(files);
+        pending.add(request);
+        return request.result;
+    }
+
+    // Every request that arrived while the previous batch was syncing goes into the next batch;
+    // a shared directory is synced once per batch however many files landed in it
+    private void runSyncer() {
+        List<SyncRequest> batch = new ArrayList<>();
+        try {
+            while (true) {
+                batch.add(pending.take());
+                if (groupCommitWindowMs > 0) Thread.sleep(groupCommitWindowMs);
+                pending.drainTo(batch);
+
+                Set<File> files = new LinkedHashSet<>();
+                for (SyncRequest request : batch) {
+                    files.addAll(request.files);
+                }
+                try {
+                    syncAll(files);
+                    batch.forEach(request -> request.result.complete(null));
+                } catch (IOException e) {
+                    batch.forEach(request -> request.result.completeExceptionally(e));
+                }
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            batch.forEach(request -> request.result.completeExceptionally(new IOException("Server is stopping")));
+        }
+    }
+
+    private static void syncAll(Collection<File> files) throws IOException {
+        Set<File> directories = new LinkedHashSet<>();
+        for (File file : files) {
+            try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+                // fsync through a fresh descriptor still flushes every dirty page of the file, mapped ones included
+                channel.force(true);
+            }
+            directories.add(file.getAbsoluteFile().getParentFile());
+        }
+        for (File directory : directories) {
+            syncDirectory(directory);
+        }
+    }
+
+    // Makes a new or renamed directory entry durable; platforms that cannot open directories skip this
+    private static void syncDirectory(File directory) {
+        try (FileChannel channel = FileChannel.open(directory.toPath(), StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException ignored) {}
+    }
+
+    private static class SyncRequest {
+        private final Collection<File> files;
+        private final CompletableFuture<Void> result = new CompletableFuture<>();
+
+        private SyncRequest(Collection<File> files) {
+            this.files = files;
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package nets.labs.lab2.server;
+
+// When uploaded data must be on stable storage relative to RESPONSE_SUCCESS
+public enum DurabilityMode {
+    // Answer as soon as the data is in the page cache
+    NONE,
+    // fsync the file and its directory before answering
+    ON_COMPLETE,
+    // Also fsync every durabilitySyncIntervalBytes while receiving, so the final fsync has little left to flush
+    PERIODIC,
+    // Hand completed files to one syncer thread that flushes them in batches and answers the whole batch at once
+    GROUP_COMMIT
+}
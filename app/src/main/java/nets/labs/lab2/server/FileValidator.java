@@ -2,14 +2,27 @@ package nets.labs.lab2.server;
 
 import java.io.File;
 import java.io.IOException;
+import java.security.MessageDigest;
+import java.util.Set;
 
 public class FileValidator {
+    // Server-owned directories inside a storage root; an upload landing there could plant chunks or read temp files
+    private static final Set<String> RESERVED_DIR_NAMES = Set.of(Constants.CHUNK_STORE_DIR_NAME, Constants.MANIFEST_DIR_NAME,
+            Constants.PARTIAL_DIR_NAME, Constants.INCOMING_DIR_NAME);
+
     public static void validateFileName(File uploadsDir, File targetFile, String fileName) throws IOException {
         String canonicalPath = targetFile.getCanonicalPath();
         String uploadsCanonicalPath = uploadsDir.getCanonicalPath();
-        if (!canonicalPath.startsWith(uploadsCanonicalPath)) {
+        if (!canonicalPath.startsWith(uploadsCanonicalPath + File.separator)) {
             throw new SecurityException("Invalid filename: " + fileName);
         }
+        // Checked on the canonical path, so "a/../.chunks/x" is caught as well
+        String relativePath = canonicalPath.substring(uploadsCanonicalPath.length() + 1);
+        int separator = relativePath.indexOf(File.separatorChar);
+        String firstElement = separator < 0 ? relativePath : relativePath.substring(0, separator);
+        if (RESERVED_DIR_NAMES.contains(firstElement)) {
+            throw new SecurityException("Invalid filename: " + fileName + " (reserved directory)");
+        }
     }
     
     public static void validateFileSize(long expectedSize, long actualSize) throws IOException {
@@ -23,4 +36,49 @@ public class FileValidator {
             throw new IllegalArgumentException("Filename length exceeds " + Constants.MAX_FILENAME_LENGTH + " bytes");
         }
     }
+
+    public static void validateChunk(long fileSize, int streamCount, long offset, long length) {
+        if (streamCount < 1 || streamCount > Constants.MAX_PARALLEL_STREAMS) {
+            throw new IllegalArgumentException("Stream count must be between 1 and " + Constants.MAX_PARALLEL_STREAMS + ": " + streamCount);
+        }
+        validateRange(fileSize, offset, length);
+    }
+
+    public static void validateRange(long fileSize, long offset, long length) {
+        if (fileSize < 0 || offset < 0 || length < 0 || offset > fileSize - length) {
+            throw new IllegalArgumentException("Invalid range [" + offset + ", +" + length + ") for file of " + fileSize + " bytes");
+        }
+    }
+
+    public static void validateDedupChunkCount(long fileSize, int chunkCount) {
+        if (fileSize < 0) throw new IllegalArgumentException("Invalid file size: " + fileSize);
+        if (chunkCount < 0 || chunkCount > Constants.MAX_DEDUP_CHUNKS) {
+            throw new IllegalArgumentException("Chunk count must be between 0 and " + Constants.MAX_DEDUP_CHUNKS + ": " + chunkCount);
+        }
+    }
+
+    public static void validateDedupChunkLength(int length) {
+        if (length <= 0 || length > Constants.DEDUP_MAX_CHUNK_SIZE) {
+            throw new IllegalArgumentException("Chunk length must be between 1 and " + Constants.DEDUP_MAX_CHUNK_SIZE + ": " + length);
+        }
+    }
+
+    public static void validateCompressedBlock(byte blockType, int rawLength, int wireLength, long remaining) {
+        if (blockType != Constants.BLOCK_RAW && blockType != Constants.BLOCK_DEFLATE) {
+            throw new IllegalArgumentException("Unknown block type: " + blockType);
+        }
+        if (rawLength <= 0 || rawLength > Constants.COMPRESSION_BLOCK_SIZE || rawLength > remaining) {
+            throw new IllegalArgumentException("Invalid block length " + rawLength + " with " + remaining + " bytes left");
+        }
+        if (wireLength <= 0 || wireLength > Constants.COMPRESSION_BLOCK_SIZE
+                || (blockType == Constants.BLOCK_RAW && wireLength != rawLength)) {
+            throw new IllegalArgumentException("Invalid wire length " + wireLength + " for block of " + rawLength + " bytes");
+        }
+    }
+
+    public static void validateChecksum(ChecksumType type, byte[] expected, byte[] actual) throws IOException {
+        if (!MessageDigest.isEqual(expected, actual)) {
+            throw new IOException(type + " checksum mismatch");
+        }
+    }
 }
\ No newline at end of file
@@ -0,0 +1,18 @@
+package nets.labs.lab2.server;
+
+import lombok.Value;
+
+import java.util.List;
+import java.util.Map;
+
+@Value
+public class MetricsSnapshot {
+    long timestamp;
+    List<TransferSnapshot> activeTransfers;
+    double aggregateMBps;
+    Map<String, Long> bytesPerClient;
+
+    static MetricsSnapshot empty() {
+        return new MetricsSnapshot(System.currentTimeMillis(), List.of(), 0.0, Map.of());
+    }
+}
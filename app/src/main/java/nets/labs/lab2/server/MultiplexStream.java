@@ -0,0 +1,89 @@
+package nets.labs.lab2.server;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicLong;
+
+// One file carried by a multiplexed connection; a failed stream keeps swallowing its frames until END
+class MultiplexStream {
+    private final String fileName;
+    private final UploadCoordinator.PendingUpload pending;
+    private final long fileSize;
+    private final AtomicLong totalBytes = new AtomicLong(0);
+    private final TransferMetrics.Transfer transfer;
+    private FileChannel fileChannel;
+    private Exception failure;
+
+    MultiplexStream(String fileName, UploadCoordinator.PendingUpload pending, long fileSize, TransferMetrics metrics, String client) {
+        this.fileName = fileName;
+        this.pending = pending;
+        this.fileSize = fileSize;
+        this.transfer = metrics.register(fileName, client, fileSize, totalBytes);
+        try {
+            fileChannel = FileChannel.open(pending.getTempFile().toPath(),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        } catch (IOException e) {
+            failure = e;
+        }
+    }
+
+    static MultiplexStream failed(String fileName, Exception cause) {
+        return new MultiplexStream(fileName, cause);
+    }
+
+    private MultiplexStream(String fileName, Exception cause) {
+        this.fileName = fileName;
+        this.pending = null;
+        this.fileSize = -1;
+        this.transfer = null;
+        this.failure = cause;
+    }
+
+    void write(ByteBuffer data) {
+        if (failure != null) {
+            data.position(data.limit());
+            return;
+        }
+        try {
+            if (totalBytes.get() + data.remaining() > fileSize) throw new IOException("More data than declared size " + fileSize);
+            int bytes = data.remaining();
+            pending.getDevice().write(() -> {
+                while (data.hasRemaining()) {
+                    fileChannel.write(data);
+                }
+                return bytes;
+            });
+            totalBytes.addAndGet(bytes);
+        } catch (IOException e) {
+            failure = e;
+        }
+    }
+
+    byte finish(DurabilityManager durability) {
+        try {
+            if (failure == null) {
+                fileChannel.close();
+                FileValidator.validateFileSize(fileSize, totalBytes.get());
+                durability.commit(pending.publish());
+                return Constants.RESPONSE_SUCCESS;
+            }
+        } catch (IOException e) {
+            failure = e;
+        } finally {
+            if (transfer != null) transfer.close();
+        }
+        System.err.println("Error receiving multiplexed file '" + fileName + "': " + failure.getMessage());
+        abort();
+        return Constants.RESPONSE_FAILURE;
+    }
+
+    void abort() {
+        if (transfer != null) transfer.close();
+        try {
+            if (fileChannel != null) fileChannel.close();
+        } catch (IOException ignored) {}
+        if (pending != null) pending.abort();
+    }
+}
@@ -0,0 +1,116 @@
+package nets.labs.lab2.server;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+class NioEventLoop implements Runnable {
+    private final Selector selector;
+    private final ServerContext context;
+    private final Thread thread;
+    private final Queue<SocketChannel> pendingChannels = new ConcurrentLinkedQueue<>();
+    private final Queue<Runnable> pendingTasks = new ConcurrentLinkedQueue<>();
+    // Shared by every session of this loop: only one of them runs at a time
+    private final ByteBuffer ioBuffer;
+    private volatile boolean running = true;
+
+    NioEventLoop(String name, ServerContext context, int chunkBytes) throws IOException {
+        this.selector = Selector.open();
+        this.context = context;
+        this.ioBuffer = ByteBuffer.allocateDirect(chunkBytes);
+        this.thread = new Thread(this, name);
+    }
+
+    void start() {
+        thread.start();
+    }
+
+    void register(SocketChannel channel) {
+        pendingChannels.add(channel);
+        selector.wakeup();
+    }
+
+    // Runs task on the loop thread, e.g. to answer a session once its fsync completed elsewhere
+    void execute(Runnable task) {
+        pendingTasks.add(task);
+        selector.wakeup();
+    }
+
+    void shutdown() {
+        running = false;
+        selector.wakeup();
+        try {
+            thread.join(Constants.JOIN_TIMEOUT_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void run() {
+        try {
+            while (running) {
+                selector.select();
+                registerPendingChannels();
+                runPendingTasks();
+
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    NioUploadSession session = (NioUploadSession) key.attachment();
+                    if (!key.isValid()) {
+                        session.close();
+                    } else if (key.isWritable()) {
+                        session.onWritable();
+                    } else if (key.isReadable()) {
+                        session.onReadable(ioBuffer);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        } finally {
+            SocketChannel channel;
+            while ((channel = pendingChannels.poll()) != null) {
+                try {
+                    channel.close();
+                } catch (IOException ignored) {}
+            }
+            for (SelectionKey key : selector.keys()) {
+                ((NioUploadSession) key.attachment()).close();
+            }
+            try {
+                selector.close();
+            } catch (IOException ignored) {}
+        }
+    }
+
+    private void runPendingTasks() {
+        Runnable task;
+        while ((task = pendingTasks.poll()) != null) {
+            task.run();
+        }
+    }
+
+    private void registerPendingChannels() {
+        SocketChannel channel;
+        while ((channel = pendingChannels.poll()) != null) {
+            try {
+                channel.configureBlocking(false);
+                SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+                key.attach(new NioUploadSession(channel, key, this, context));
+            } catch (IOException e) {
+                System.err.println("Error registering client channel: " + e.getMessage());
+                try {
+                    channel.close();
+                } catch (IOException ignored) {}
+            }
+        }
+    }
+}
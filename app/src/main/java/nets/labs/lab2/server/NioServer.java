@@ -0,0 +1,84 @@
+package nets.labs.lab2.server;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+
+public class NioServer implements UploadServer {
+    private final ServerConfig config;
+    private final ServerContext context;
+    private ServerSocketChannel serverChannel;
+    private NioEventLoop[] eventLoops;
+    private Thread acceptThread;
+
+    public NioServer() {
+        this(ServerConfig.defaults());
+    }
+
+    public NioServer(ServerConfig config) {
+        this.config = config;
+        this.context = new ServerContext(config);
+    }
+
+    @Override
+    public void start(int port) throws IOException {
+        serverChannel = ServerSocketChannel.open();
+        config.getSocketTuning().applyToServer(serverChannel.socket());
+        serverChannel.bind(new InetSocketAddress(port));
+
+        context.start();
+        eventLoops = new NioEventLoop[Math.max(1, config.getEventLoopThreads())];
+        for (int i = 0; i < eventLoops.length; i++) {
+            eventLoops[i] = new NioEventLoop("nio-event-loop-" + i, context, config.getSocketTuning().getChunkBytes());
+            eventLoops[i].start();
+        }
+
+        acceptThread = new Thread(() -> {
+            try {
+                System.out.println("NIO server started on port " + port + " with " + eventLoops.length + " event loops");
+                int next = 0;
+                while (true) {
+                    SocketChannel clientChannel = serverChannel.accept();
+                    try {
+                        config.getSocketTuning().applyToAccepted(clientChannel.socket());
+                    } catch (IOException e) {
+                        System.err.println("Error tuning client socket: " + e.getMessage());
+                    }
+                    eventLoops[next].register(clientChannel);
+                    next = (next + 1) % eventLoops.length;
+                }
+            } catch (IOException e) {
+                if (serverChannel.isOpen()) {
+                    e.printStackTrace();
+                }
+            }
+        }, "nio-acceptor");
+        acceptThread.start();
+    }
+
+    @Override
+    public void stop() throws IOException {
+        serverChannel.close();
+        acceptThread.interrupt();
+        for (NioEventLoop eventLoop : eventLoops) {
+            eventLoop.shutdown();
+        }
+        context.stop();
+    }
+
+    @Override
+    public TransferMetrics getMetrics() {
+        return context.getMetrics();
+    }
+
+    @Override
+    public BufferPool getBufferPool() {
+        return context.getBufferPool();
+    }
+
+    @Override
+    public UploadStorage getStorage() {
+        return context.getStorage();
+    }
+}
@@ -0,0 +1,188 @@
+package nets.labs.lab2.server;
+
+import java.io.IOException;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+class NioUploadSession {
+    private enum State { FILE_NAME_LENGTH, FILE_NAME, FILE_SIZE, PAYLOAD, SYNCING, RESPONSE, CLOSED }
+
+    private final SocketChannel channel;
+    private final SelectionKey key;
+    private final NioEventLoop loop;
+    private final ServerContext context;
+    private final AtomicLong totalBytes = new AtomicLong(0);
+    private State state = State.FILE_NAME_LENGTH;
+    private ByteBuffer headerBuffer = ByteBuffer.allocate(Integer.BYTES);
+    private ByteBuffer responseBuffer;
+    private FileChannel fileChannel;
+    private UploadCoordinator.PendingUpload pending;
+    private String fileName;
+    private long fileSize;
+    private long startTimestamp;
+    private TransferMetrics.Transfer transfer;
+
+    NioUploadSession(SocketChannel channel, SelectionKey key, NioEventLoop loop, ServerContext context) {
+        this.channel = channel;
+        this.key = key;
+        this.loop = loop;
+        this.context = context;
+    }
+
+    void onReadable(ByteBuffer ioBuffer) {
+        try {
+            for (int reads = 0; reads < Constants.MAX_READS_PER_EVENT && state.ordinal() <= State.PAYLOAD.ordinal(); reads++) {
+                int bytesRead = state == State.PAYLOAD ? readPayload(ioBuffer) : readHeader();
+                if (bytesRead == -1) throw new IOException("Unexpected end of stream before receiving all data");
+                if (bytesRead == 0) break;
+            }
+        } catch (Exception e) {
+            fail(e);
+        }
+    }
+
+    void onWritable() {
+        try {
+            channel.write(responseBuffer);
+            if (!responseBuffer.hasRemaining()) close();
+        } catch (IOException e) {
+            close();
+        }
+    }
+
+    private int readHeader() throws IOException {
+        int bytesRead = channel.read(headerBuffer);
+        if (headerBuffer.hasRemaining()) return bytesRead;
+        headerBuffer.flip();
+
+        switch (state) {
+            case FILE_NAME_LENGTH -> {
+                int fileNameLength = headerBuffer.getInt();
+                FileValidator.validateFileNameLength(fileNameLength);
+                headerBuffer = ByteBuffer.allocate(fileNameLength);
+                state = State.FILE_NAME;
+            }
+            case FILE_NAME -> {
+                fileName = StandardCharsets.UTF_8.decode(headerBuffer).toString();
+                headerBuffer = ByteBuffer.allocate(Long.BYTES);
+                state = State.FILE_SIZE;
+            }
+            case FILE_SIZE -> {
+                fileSize = headerBuffer.getLong();
+                // Rejected before the name is claimed, as UploadHeader and AsyncUploadSession do
+                if (fileSize < 0) throw new IllegalArgumentException("Invalid file size: " + fileSize);
+                openTargetFile();
+                state = State.PAYLOAD;
+                if (fileSize == 0) complete();
+            }
+            default -> throw new IllegalStateException("Unexpected header state: " + state);
+        }
+        // A zero-length name leaves nothing to read, so report progress explicitly
+        return Math.max(bytesRead, 1);
+    }
+
+    private int readPayload(ByteBuffer ioBuffer) throws IOException {
+        ioBuffer.clear();
+        ioBuffer.limit((int) Math.min(ioBuffer.capacity(), fileSize - totalBytes.get()));
+        int bytesRead = channel.read(ioBuffer);
+        if (bytesRead <= 0) return bytesRead;
+
+        ioBuffer.flip();
+        while (ioBuffer.hasRemaining()) {
+            fileChannel.write(ioBuffer);
+        }
+        // The event loop must not wait for a write slot; the loop count already bounds its concurrent writes
+        pending.getDevice().recordUnscheduled(bytesRead);
+        if (totalBytes.addAndGet(bytesRead) == fileSize) complete();
+        return bytesRead;
+    }
+
+    private void openTargetFile() throws IOException {
+        pending = context.getUploads().begin(fileName);
+        fileChannel = FileChannel.open(pending.getTempFile().toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        startTimestamp = System.currentTimeMillis();
+        transfer = context.getMetrics().register(fileName,
+                channel.socket().getInetAddress().getHostAddress(), fileSize, totalBytes);
+    }
+
+    private void complete() throws IOException {
+        fileChannel.close();
+        transfer.close();
+        FileValidator.validateFileSize(fileSize, totalBytes.get());
+
+        long elapsed = System.currentTimeMillis() - startTimestamp;
+        double averageMBps = elapsed == 0 ? 0.0 :
+            (totalBytes.get() / (elapsed / 1000.0)) / Constants.BYTES_TO_MEGABYTES_DIVISOR;
+        System.out.printf("File '%s': received %d bytes, average %.2f MB/s (%s)%n", fileName, totalBytes.get(), averageMBps,
+                context.getSocketTuning().describe(channel.socket()));
+
+        // The fsync must not block the loop: stop reading and answer from the loop once it is done
+        CompletableFuture<Void> synced = context.getDurability().commitAsync(pending.publish());
+        if (synced.isDone()) {
+            onSynced(synced);
+        } else {
+            state = State.SYNCING;
+            key.interestOps(0);
+            synced.whenComplete((ignored, error) -> loop.execute(() -> onSynced(synced)));
+        }
+    }
+
+    private void onSynced(CompletableFuture<Void> synced) {
+        if (state == State.CLOSED) return;
+        try {
+            synced.join();
+            respond(Constants.RESPONSE_SUCCESS);
+        } catch (CompletionException e) {
+            fail(new IOException("Sync failed: " + e.getCause().getMessage(), e.getCause()));
+        }
+    }
+
+    private void fail(Exception e) {
+        Socket socket = channel.socket();
+        System.err.println("Error handling client " + socket.getInetAddress() + " for file '" + fileName + "': " + e.getMessage());
+        if (state == State.RESPONSE || state == State.CLOSED) {
+            close();
+            return;
+        }
+        respond(Constants.RESPONSE_FAILURE);
+    }
+
+    private void respond(byte response) {
+        state = State.RESPONSE;
+        responseBuffer = ByteBuffer.wrap(new byte[]{response});
+        try {
+            channel.write(responseBuffer);
+        } catch (IOException e) {
+            close();
+            return;
+        }
+        if (responseBuffer.hasRemaining()) {
+            key.interestOps(SelectionKey.OP_WRITE);
+        } else {
+            close();
+        }
+    }
+
+    void close() {
+        if (state == State.CLOSED) return;
+        state = State.CLOSED;
+        key.cancel();
+        if (transfer != null) transfer.close();
+        try {
+            if (fileChannel != null) fileChannel.close();
+        } catch (IOException ignored) {}
+        if (pending != null) pending.abort();
+        try {
+            channel.close();
+        } catch (IOException ignored) {}
+    }
+}
@@ -0,0 +1,13 @@
+package nets.labs.lab2.server;
+
+import java.nio.ByteBuffer;
+
+// Digest folded into the copy loop so the payload never has to be re-read from disk
+public interface PayloadDigest {
+    void update(byte[] buffer, int offset, int length);
+
+    // Consumes the remaining bytes of data
+    void update(ByteBuffer data);
+
+    byte[] finish();
+}
@@ -0,0 +1,93 @@
+package nets.labs.lab2.server;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+// Sends RESPONSE_PROGRESS frames of one transfer to its client, built from the samples SpeedMonitor also reads.
+// Frames go out on a writer thread, so a client that stops reading never stalls the shared metrics sampler.
+class ProgressReporter implements Consumer<MetricsSnapshot>, AutoCloseable {
+    private static final TransferSnapshot CLOSE = new TransferSnapshot(-1, null, null, 0, 0, 0, 0, 0, 0, 0, 0);
+
+    private final TransferMetrics metrics;
+    private final long transferId;
+    private final DataOutputStream output;
+    private final BlockingQueue<TransferSnapshot> frames = new LinkedBlockingQueue<>();
+    private final Thread writer;
+    private final CompletableFuture<Void> stopped = new CompletableFuture<>();
+
+    ProgressReporter(TransferMetrics metrics, TransferMetrics.Transfer transfer, OutputStream output) {
+        this.metrics = metrics;
+        this.transferId = transfer.getId();
+        this.output = new DataOutputStream(output);
+        this.writer = Thread.ofVirtual().name("upload-progress-" + transferId).start(this::run);
+        metrics.addListener(this);
+    }
+
+    @Override
+    public void accept(MetricsSnapshot snapshot) {
+        for (TransferSnapshot transfer : snapshot.getActiveTransfers()) {
+            if (transfer.getId() == transferId) frames.add(transfer);
+        }
+    }
+
+    private void run() {
+        List<TransferSnapshot> pending = new ArrayList<>();
+        try {
+            while (true) {
+                pending.add(frames.take());
+                frames.drainTo(pending);
+                if (pending.contains(CLOSE)) return;
+                // A writer that fell behind only sends the newest sample
+                TransferSnapshot latest = pending.get(pending.size() - 1);
+                pending.clear();
+
+                output.writeByte(Constants.RESPONSE_PROGRESS);
+                output.writeLong(latest.getBytes());
+                output.writeLong((long) (latest.getInstantaneousMBps() * Constants.BYTES_TO_MEGABYTES_DIVISOR));
+                output.writeLong(latest.getEtaSeconds() < 0 ? -1 : (long) (latest.getEtaSeconds() * 1000));
+                output.flush();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            // Client gone; the handler notices on its own
+        } finally {
+            metrics.removeListener(this);
+            stopped.complete(null);
+        }
+    }
+
+    // Returns once no frame can be written anymore
+    @Override
+    public void close() {
+        closeAsync().join();
+    }
+
+    // Completes once no frame can be written anymore, for callers that must not block, e.g. completion handlers.
+    // A client that stopped reading leaves the writer blocked mid-frame; after JOIN_TIMEOUT_MS its connection
+    // is closed, since no valid response could follow anyway.
+    CompletableFuture<Void> closeAsync() {
+        metrics.removeListener(this);
+        frames.add(CLOSE);
+        return stopped.copy()
+                .completeOnTimeout(null, Constants.JOIN_TIMEOUT_MS, TimeUnit.MILLISECONDS)
+                .thenRun(() -> {
+                    if (!stopped.isDone()) abandon();
+                });
+    }
+
+    private void abandon() {
+        writer.interrupt();
+        try {
+            output.close();
+        } catch (IOException ignored) {}
+    }
+}
@@ -1,33 +1,118 @@
 package nets.labs.lab2.server;
 
 import java.io.IOException;
+import java.net.InetSocketAddress;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.nio.channels.ServerSocketChannel;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 
-public class Server {
+public class Server implements UploadServer {
+    private final ServerConfig config;
+    private final Semaphore inFlightHandlers;
+    private final ServerContext context;
+    private final Set<Socket> activeSockets = ConcurrentHashMap.newKeySet();
     private ServerSocket serverSocket;
     private Thread serverThread;
+    private ExecutorService handlerExecutor;
 
+    public Server() {
+        this(ServerConfig.defaults());
+    }
+
+    public Server(ServerConfig config) {
+        this.config = config;
+        this.inFlightHandlers = new Semaphore(config.getMaxInFlightHandlers());
+        this.context = new ServerContext(config);
+    }
+
+    @Override
     public void start(int port) throws IOException {
-        serverSocket = new ServerSocket(port);
+        // Opened through a channel so accepted sockets expose getChannel() for the zero-copy path
+        serverSocket = ServerSocketChannel.open().socket();
+        config.getSocketTuning().applyToServer(serverSocket);
+        serverSocket.bind(new InetSocketAddress(port));
+        handlerExecutor = config.getEngine() == ServerEngine.VIRTUAL_THREADS
+                ? Executors.newVirtualThreadPerTaskExecutor()
+                : Executors.newThreadPerTaskExecutor(Thread.ofPlatform().factory());
+        context.start();
+
         serverThread = new Thread(() -> {
             try {
-                System.out.println("Server started on port " + port);
+                System.out.println("Server started on port " + port + " (" + config.getEngine() + ")");
                 while (true) {
-                    Socket clientSocket = serverSocket.accept();
-                    new Thread(new ClientHandler(clientSocket)).start();
+                    // Stop accepting while the handler limit is reached instead of queueing unbounded work
+                    inFlightHandlers.acquire();
+                    Socket clientSocket;
+                    try {
+                        clientSocket = serverSocket.accept();
+                    } catch (IOException e) {
+                        inFlightHandlers.release();
+                        throw e;
+                    }
+                    submit(clientSocket);
                 }
             } catch (IOException e) {
                 if (!serverSocket.isClosed()) {
                     e.printStackTrace();
                 }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
             }
         });
         serverThread.start();
     }
 
+    private void submit(Socket clientSocket) {
+        activeSockets.add(clientSocket);
+        ClientHandler handler = new ClientHandler(clientSocket, config, context);
+        handlerExecutor.execute(() -> {
+            try {
+                handler.run();
+            } finally {
+                activeSockets.remove(clientSocket);
+                inFlightHandlers.release();
+            }
+        });
+    }
+
+    @Override
     public void stop() throws IOException {
         serverSocket.close();
         serverThread.interrupt();
+        handlerExecutor.shutdown();
+        try {
+            if (!handlerExecutor.awaitTermination(Constants.SHUTDOWN_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                // Blocking socket reads do not react to interrupts, so unblock them by closing the sockets
+                for (Socket socket : activeSockets) {
+                    socket.close();
+                }
+                handlerExecutor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            handlerExecutor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        context.stop();
+    }
+
+    @Override
+    public TransferMetrics getMetrics() {
+        return context.getMetrics();
+    }
+
+    @Override
+    public BufferPool getBufferPool() {
+        return context.getBufferPool();
+    }
+
+    @Override
+    public UploadStorage getStorage() {
+        return context.getStorage();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,85 @@
+package nets.labs.lab2.server;
+
+import lombok.Builder;
+import lombok.Getter;
+
+import java.util.List;
+import java.util.Map;
+
+@Getter
+@Builder
+public class ServerConfig {
+    @Builder.Default
+    private final ServerEngine engine = ServerEngine.THREAD_PER_CONNECTION;
+    // Event loops of NIO_SELECTOR, completion handler threads of ASYNC_CHANNELS
+    @Builder.Default
+    private final int eventLoopThreads = Constants.DEFAULT_EVENT_LOOP_THREADS;
+    @Builder.Default
+    private final int maxInFlightHandlers = Constants.DEFAULT_MAX_IN_FLIGHT_HANDLERS;
+    @Builder.Default
+    private final int maxConcurrentTransfers = Constants.DEFAULT_MAX_CONCURRENT_TRANSFERS;
+    // Transfers waiting for a slot; beyond this new connections get RESPONSE_BUSY
+    @Builder.Default
+    private final int maxQueuedTransfers = Constants.DEFAULT_MAX_QUEUED_TRANSFERS;
+    // Bandwidth limits in bytes per second, 0 means unlimited
+    @Builder.Default
+    private final long globalBytesPerSecond = 0;
+    @Builder.Default
+    private final long clientBytesPerSecond = 0;
+    // Per-IP rates that replace clientBytesPerSecond, e.g. to give important clients more room
+    @Builder.Default
+    private final Map<String, Long> clientRateOverrides = Map.of();
+    // Direct memory budget shared by all receive buffers
+    @Builder.Default
+    private final long bufferPoolBytes = Constants.DEFAULT_BUFFER_POOL_BYTES;
+    // Print per-transfer speed every SPEED_MONITOR_INTERVAL_MS
+    @Builder.Default
+    private final boolean printSpeed = true;
+    // Land payloads with FileChannel.transferFrom instead of copying through a byte[]
+    @Builder.Default
+    private final boolean zeroCopy = false;
+
+    // How uploads with a known size hit the disk; files below preallocateThresholdBytes always use STREAM
+    @Builder.Default
+    private final WriteMode writeMode = WriteMode.STREAM;
+    @Builder.Default
+    private final long preallocateThresholdBytes = Constants.DEFAULT_PREALLOCATE_THRESHOLD_BYTES;
+    // Size of each MappedByteBuffer window in MAPPED mode
+    @Builder.Default
+    private final int writeWindowBytes = Constants.DEFAULT_WRITE_WINDOW_BYTES;
+    @Builder.Default
+    private final DurabilityMode durability = DurabilityMode.NONE;
+    // fsync interval of DurabilityMode.PERIODIC
+    @Builder.Default
+    private final long durabilitySyncIntervalBytes = Constants.DEFAULT_DURABILITY_SYNC_INTERVAL_BYTES;
+    // Extra wait of the group commit syncer for more uploads to join a batch, 0 batches only what is already queued
+    @Builder.Default
+    private final long groupCommitWindowMs = 0;
+    // Rebuild deduplicated uploads into storage right away; otherwise only the manifest is kept
+    // and ChunkStore.rebuild restores the file on demand
+    @Builder.Default
+    private final boolean dedupMaterialize = true;
+    // Directories uploads are spread over, ideally one per disk; a name always maps to the same root
+    @Builder.Default
+    private final List<String> storageRoots = List.of(Constants.UPLOADS_DIR);
+    // Levels of hashed subdirectories below each root, 0 keeps files directly in the root
+    @Builder.Default
+    private final int shardDepth = 0;
+    // Uploads writing to one root at a time, 0 means unlimited
+    @Builder.Default
+    private final int maxWritersPerDevice = 0;
+    // Resolution of uploads that target the same file name
+    @Builder.Default
+    private final ConflictPolicy conflictPolicy = ConflictPolicy.LAST_WRITER_WINS;
+    // Socket buffers, TCP_NODELAY and the receive chunk size of every connection
+    @Builder.Default
+    private final SocketTuning socketTuning = SocketTuning.defaults();
+
+    public static ServerConfig defaults() {
+        return ServerConfig.builder().build();
+    }
+
+    public UploadServer createServer() {
+        return engine.create(this);
+    }
+}
@@ -0,0 +1,40 @@
+package nets.labs.lab2.server;
+
+import lombok.Getter;
+
+@Getter
+class ServerContext {
+    private final TransferMetrics metrics = new TransferMetrics();
+    private final DurabilityManager durability;
+    private final UploadStorage storage;
+    private final UploadCoordinator uploads;
+    private final ChunkedUploads chunkedUploads;
+    private final ChunkStore chunkStore = new ChunkStore();
+    private final BufferPool bufferPool;
+    private final AdmissionController admission;
+    private final BandwidthShaper shaper;
+    private final SocketTuning socketTuning;
+
+    ServerContext(ServerConfig config) {
+        this.durability = new DurabilityManager(config);
+        this.storage = new UploadStorage(config);
+        this.uploads = new UploadCoordinator(config, storage);
+        this.chunkedUploads = new ChunkedUploads(metrics, durability, uploads);
+        this.bufferPool = new BufferPool(config.getSocketTuning().poolChunkBytes(), Constants.MAX_ADAPTIVE_BUFFER_SIZE, config.getBufferPoolBytes());
+        this.admission = new AdmissionController(config.getMaxConcurrentTransfers(), config.getMaxQueuedTransfers());
+        this.shaper = new BandwidthShaper(config);
+        this.socketTuning = config.getSocketTuning();
+        if (config.isPrintSpeed()) metrics.addListener(new SpeedMonitor());
+    }
+
+    void start() {
+        uploads.sweepIncoming();
+        metrics.start();
+        durability.start();
+    }
+
+    void stop() {
+        metrics.stop();
+        durability.stop();
+    }
+}
@@ -0,0 +1,31 @@
+package nets.labs.lab2.server;
+
+public enum ServerEngine {
+    THREAD_PER_CONNECTION {
+        @Override
+        public UploadServer create(ServerConfig config) {
+            return new Server(config);
+        }
+    },
+    VIRTUAL_THREADS {
+        @Override
+        public UploadServer create(ServerConfig config) {
+            return new Server(config);
+        }
+    },
+    NIO_SELECTOR {
+        @Override
+        public UploadServer create(ServerConfig config) {
+            return new NioServer(config);
+        }
+    },
+    // NIO.2 completion handlers: socket reads chain into positional AsynchronousFileChannel writes
+    ASYNC_CHANNELS {
+        @Override
+        public UploadServer create(ServerConfig config) {
+            return new AsyncServer(config);
+        }
+    };
+
+    public abstract UploadServer create(ServerConfig config);
+}
@@ -0,0 +1,123 @@
+package nets.labs.lab2.server;
+
+import lombok.Builder;
+import lombok.Getter;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.net.StandardSocketOptions;
+import java.nio.channels.NetworkChannel;
+import java.nio.channels.SocketChannel;
+
+// Socket options and user-space chunk size shared by the server and the clients; 0 keeps the OS default
+@Getter
+@Builder
+public class SocketTuning {
+    @Builder.Default
+    private final int sendBufferBytes = 0;
+    @Builder.Default
+    private final int receiveBufferBytes = 0;
+    // Size of the user-space buffer each read or write goes through
+    @Builder.Default
+    private final int chunkBytes = Constants.BUFFER_SIZE;
+    // Nagle only delays small writes; bulk transfers keep it on unless latency of small frames matters
+    @Builder.Default
+    private final boolean tcpNoDelay = false;
+    // Size socket buffers to the bandwidth-delay product of each connection instead of the fixed values
+    @Builder.Default
+    private final boolean autoTune = false;
+    // Expected link rate, the bandwidth half of the bandwidth-delay product
+    @Builder.Default
+    private final long linkBytesPerSecond = Constants.DEFAULT_LINK_BYTES_PER_SECOND;
+    @Builder.Default
+    private final int maxBufferBytes = Constants.MAX_TUNED_BUFFER_BYTES;
+
+    public static SocketTuning defaults() {
+        return SocketTuning.builder().build();
+    }
+
+    // Opens a blocking connection; the TCP handshake takes one round trip, so its duration is the RTT sample for autoTune
+    public SocketChannel connect(String host, int port) throws IOException {
+        SocketChannel channel = SocketChannel.open();
+        try {
+            Socket socket = channel.socket();
+            // Before connect: the receive window scale is fixed by the SYN
+            if (receiveBufferBytes > 0) socket.setReceiveBufferSize(receiveBufferBytes);
+            if (sendBufferBytes > 0) socket.setSendBufferSize(sendBufferBytes);
+            socket.setTcpNoDelay(tcpNoDelay);
+
+            long start = System.nanoTime();
+            channel.connect(new InetSocketAddress(host, port));
+            long rttNanos = System.nanoTime() - start;
+
+            // Only the send buffer: SO_RCVBUF after the handshake no longer changes the window scale and would switch
+            // off the kernel's receive autotuning. Raising is all autoTune does; a LAN RTT keeps the OS value.
+            if (autoTune) {
+                int buffer = bdpBytes(rttNanos);
+                if (buffer > socket.getSendBufferSize()) socket.setSendBufferSize(buffer);
+            }
+            System.out.printf("Connected to %s:%d: RTT %.3f ms, %s%n", host, port, rttNanos / 1e6, describe(socket));
+            return channel;
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    // Accepted sockets inherit the listener's receive buffer, which must be set before bind to affect the window scale.
+    // Server-side autoTune keeps the OS default here: the kernel's own receive autotuning follows the BDP,
+    // and a plain upload has no round trip the server could time before data starts flowing.
+    public void applyToServer(ServerSocket serverSocket) throws SocketException {
+        if (receiveBufferBytes > 0 && !autoTune) serverSocket.setReceiveBufferSize(receiveBufferBytes);
+    }
+
+    public void applyToAccepted(Socket socket) throws SocketException {
+        if (sendBufferBytes > 0 && !autoTune) socket.setSendBufferSize(sendBufferBytes);
+        socket.setTcpNoDelay(tcpNoDelay);
+    }
+
+    // Same as the Socket variants for channels without a Socket view, e.g. the asynchronous ones
+    public void applyToServer(NetworkChannel serverChannel) throws IOException {
+        if (receiveBufferBytes > 0 && !autoTune) serverChannel.setOption(StandardSocketOptions.SO_RCVBUF, receiveBufferBytes);
+    }
+
+    public void applyToAccepted(NetworkChannel channel) throws IOException {
+        if (sendBufferBytes > 0 && !autoTune) channel.setOption(StandardSocketOptions.SO_SNDBUF, sendBufferBytes);
+        channel.setOption(StandardSocketOptions.TCP_NODELAY, tcpNoDelay);
+    }
+
+    public String describe(NetworkChannel channel) {
+        try {
+            return String.format("SO_SNDBUF=%d, SO_RCVBUF=%d, TCP_NODELAY=%b, chunk=%d%s",
+                    channel.getOption(StandardSocketOptions.SO_SNDBUF), channel.getOption(StandardSocketOptions.SO_RCVBUF),
+                    channel.getOption(StandardSocketOptions.TCP_NODELAY), chunkBytes, autoTune ? " (auto)" : "");
+        } catch (IOException e) {
+            return "socket options unavailable: " + e.getMessage();
+        }
+    }
+
+    public String describe(Socket socket) {
+        try {
+            return String.format("SO_SNDBUF=%d, SO_RCVBUF=%d, TCP_NODELAY=%b, chunk=%d%s",
+                    socket.getSendBufferSize(), socket.getReceiveBufferSize(), socket.getTcpNoDelay(), chunkBytes,
+                    autoTune ? " (auto)" : "");
+        } catch (SocketException e) {
+            return "socket options unavailable: " + e.getMessage();
+        }
+    }
+
+    // BufferPool needs a power of two no larger than its biggest size class
+    int poolChunkBytes() {
+        int size = Integer.highestOneBit(Math.max(1, chunkBytes));
+        if (size < chunkBytes) size <<= 1;
+        return Math.min(size, Constants.MAX_ADAPTIVE_BUFFER_SIZE);
+    }
+
+    int bdpBytes(long rttNanos) {
+        long bdp = (long) (linkBytesPerSecond * (rttNanos / 1e9));
+        return (int) Math.min(bdp, maxBufferBytes);
+    }
+}
@@ -1,48 +1,24 @@
 package nets.labs.lab2.server;
 
-import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 
-public class SpeedMonitor implements Runnable {
-    private final AtomicLong totalBytes;
-    private volatile boolean isCompleted;
-    private final long startTimestamp;
-    private final String fileName;
-    
-    public SpeedMonitor(AtomicLong totalBytes, boolean isCompleted, long startTimestamp, String fileName) {
-        this.totalBytes = totalBytes;
-        this.isCompleted = isCompleted;
-        this.startTimestamp = startTimestamp;
-        this.fileName = fileName;
-    }
-    
+// Prints every metrics sample; just one consumer of TransferMetrics
+public class SpeedMonitor implements Consumer<MetricsSnapshot> {
     @Override
-    public void run() {
-        long lastSpeedPrintTime = System.currentTimeMillis();
-        long lastSpeedPrintBytes = 0;
-
-        while (!isCompleted) {
-            long currentTime = System.currentTimeMillis();
-            long currentTotal = totalBytes.get();
-            long elapsed = currentTime - lastSpeedPrintTime;
-            long bytesSinceLast = currentTotal - lastSpeedPrintBytes;
-
-            double instantaneousMBps = (elapsed == 0) ? 0.0 : 
-                (bytesSinceLast / (elapsed / 1000.0)) / Constants.BYTES_TO_MEGABYTES_DIVISOR;
-            double averageMBps = (currentTime - startTimestamp) == 0 ? 0.0 : 
-                (currentTotal / ((currentTime - startTimestamp) / 1000.0)) / Constants.BYTES_TO_MEGABYTES_DIVISOR;
-
-            System.out.printf("File '%s': instantaneous %.2f MB/s, average %.2f MB/s%n",
-                fileName, instantaneousMBps, averageMBps);
-
-            lastSpeedPrintTime = currentTime;
-            lastSpeedPrintBytes = currentTotal;
-
-            try {
-                Thread.sleep(Constants.SPEED_MONITOR_INTERVAL_MS);
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-                break;
+    public void accept(MetricsSnapshot snapshot) {
+        for (TransferSnapshot transfer : snapshot.getActiveTransfers()) {
+            String eta = transfer.getEtaSeconds() < 0 ? "unknown" : String.format("%.0f s", transfer.getEtaSeconds());
+            System.out.printf("File '%s': instantaneous %.2f MB/s, average %.2f MB/s, ETA %s%n",
+                transfer.getFileName(), transfer.getInstantaneousMBps(), transfer.getAverageMBps(), eta);
+            if (transfer.getWireBytes() != transfer.getBytes()) {
+                System.out.printf("File '%s': wire %.2f MB/s, %d of %d bytes on the wire%n",
+                    transfer.getFileName(), transfer.getAverageWireMBps(), transfer.getWireBytes(), transfer.getBytes());
             }
         }
+
+        if (snapshot.getActiveTransfers().size() > 1) {
+            System.out.printf("Server: %d active transfers, %.2f MB/s total%n",
+                snapshot.getActiveTransfers().size(), snapshot.getAggregateMBps());
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,89 @@
+package nets.labs.lab2.server;
+
+import lombok.Getter;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// One storage root with its own write scheduler. An upload holds one writer slot from its first byte to its
+// publish or abort; uploads beyond maxWriters queue in FIFO order instead of all streaming to the disk at once
+// and turning sequential writes into seeks. Individual writes take no lock.
+class StorageDevice {
+    @Getter
+    private final File root;
+    // Temp files must live on the same filesystem as the root so they can be renamed into place
+    @Getter
+    private final File incomingDir;
+    @Getter
+    private final File partialDir;
+    private final Semaphore writers;
+    private final AtomicInteger queuedWriters = new AtomicInteger();
+    private final AtomicLong bytesWritten = new AtomicLong();
+    private int activeWriters;
+    private long busySince;
+    private long busyNanos;
+
+    // maxWriters of 0 leaves the device unscheduled
+    StorageDevice(File root, int maxWriters) {
+        this.root = root;
+        this.incomingDir = new File(root, Constants.INCOMING_DIR_NAME);
+        this.partialDir = new File(root, Constants.PARTIAL_DIR_NAME);
+        this.writers = maxWriters > 0 ? new Semaphore(maxWriters, true) : null;
+    }
+
+    // Runs one write of an upload; the write returns the number of bytes it wrote
+    void write(DeviceWrite write) throws IOException {
+        bytesWritten.addAndGet(write.run());
+    }
+
+    // Counts bytes written by callers that must not wait for a slot, i.e. NIO event loops
+    void recordUnscheduled(long bytes) {
+        bytesWritten.addAndGet(bytes);
+    }
+
+    // Waits for a writer slot; every acquireSlot is paired with one releaseSlot
+    void acquireSlot() throws InterruptedIOException {
+        acquire();
+        enter();
+    }
+
+    void releaseSlot() {
+        exit();
+        if (writers != null) writers.release();
+    }
+
+    synchronized StorageDeviceStats stats() {
+        long busy = busyNanos + (activeWriters > 0 ? System.nanoTime() - busySince : 0);
+        double busyMBps = busy == 0 ? 0.0 : bytesWritten.get() / (busy / 1e9) / Constants.BYTES_TO_MEGABYTES_DIVISOR;
+        return new StorageDeviceStats(root.getPath(), activeWriters, queuedWriters.get(), bytesWritten.get(), busyMBps);
+    }
+
+    private void acquire() throws InterruptedIOException {
+        if (writers == null) return;
+        queuedWriters.incrementAndGet();
+        try {
+            writers.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a write slot on " + root);
+        } finally {
+            queuedWriters.decrementAndGet();
+        }
+    }
+
+    private synchronized void enter() {
+        if (activeWriters++ == 0) busySince = System.nanoTime();
+    }
+
+    private synchronized void exit() {
+        if (--activeWriters == 0) busyNanos += System.nanoTime() - busySince;
+    }
+
+    interface DeviceWrite {
+        long run() throws IOException;
+    }
+}
@@ -0,0 +1,14 @@
+package nets.labs.lab2.server;
+
+import lombok.Value;
+
+@Value
+public class StorageDeviceStats {
+    String root;
+    int activeWriters;
+    // Uploads waiting for one of the device's maxWritersPerDevice slots
+    int queuedWriters;
+    long bytesWritten;
+    // Write rate while at least one upload held a slot, so idle periods do not dilute it
+    double busyMBps;
+}
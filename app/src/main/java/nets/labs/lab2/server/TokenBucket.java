@@ -0,0 +1,38 @@
+package nets.labs.lab2.server;
+
+import java.util.concurrent.TimeUnit;
+
+// Tokens are bytes; consumers may overdraw and then sleep off the debt, so reads never have to be split
+class TokenBucket {
+    private final long bytesPerSecond;
+    private final long capacity;
+    private double tokens;
+    private long lastRefillNanos = System.nanoTime();
+
+    TokenBucket(long bytesPerSecond) {
+        this.bytesPerSecond = bytesPerSecond;
+        this.capacity = Math.max(1, (long) (bytesPerSecond * Constants.SHAPING_BURST_SECONDS));
+        this.tokens = capacity;
+    }
+
+    long getBytesPerSecond() {
+        return bytesPerSecond;
+    }
+
+    // A bucket that has refilled completely is indistinguishable from a new one
+    synchronized boolean isIdle(long nowNanos) {
+        return tokens + (nowNanos - lastRefillNanos) / 1e9 * bytesPerSecond >= capacity;
+    }
+
+    void consume(long bytes) throws InterruptedException {
+        long waitNanos;
+        synchronized (this) {
+            long now = System.nanoTime();
+            tokens = Math.min(capacity, tokens + (now - lastRefillNanos) / 1e9 * bytesPerSecond);
+            lastRefillNanos = now;
+            tokens -= bytes;
+            waitNanos = tokens >= 0 ? 0 : (long) (-tokens / bytesPerSecond * 1e9);
+        }
+        if (waitNanos > 0) TimeUnit.NANOSECONDS.sleep(waitNanos);
+    }
+}
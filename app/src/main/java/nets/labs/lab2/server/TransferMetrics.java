@@ -0,0 +1,148 @@
+package nets.labs.lab2.server;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+// Samples every active transfer on one scheduler thread and publishes snapshots to listeners
+public class TransferMetrics {
+    private final Map<Long, Transfer> activeTransfers = new ConcurrentHashMap<>();
+    private final Map<String, AtomicLong> completedBytesPerClient = new ConcurrentHashMap<>();
+    private final List<Consumer<MetricsSnapshot>> listeners = new CopyOnWriteArrayList<>();
+    private final AtomicLong nextId = new AtomicLong();
+    private volatile MetricsSnapshot lastSnapshot = MetricsSnapshot.empty();
+    private ScheduledExecutorService sampler;
+
+    public synchronized void start() {
+        if (sampler != null) return;
+        sampler = Executors.newSingleThreadScheduledExecutor(
+                runnable -> Thread.ofPlatform().name("transfer-metrics").daemon().unstarted(runnable));
+        sampler.scheduleAtFixedRate(this::sample, Constants.SPEED_MONITOR_INTERVAL_MS,
+                Constants.SPEED_MONITOR_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void stop() {
+        if (sampler == null) return;
+        sampler.shutdownNow();
+        sampler = null;
+    }
+
+    public void addListener(Consumer<MetricsSnapshot> listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Consumer<MetricsSnapshot> listener) {
+        listeners.remove(listener);
+    }
+
+    // Latest sample; refreshed every SPEED_MONITOR_INTERVAL_MS while the server runs
+    public MetricsSnapshot snapshot() {
+        return lastSnapshot;
+    }
+
+    Transfer register(String fileName, String client, long expectedBytes, AtomicLong bytes) {
+        return register(fileName, client, expectedBytes, bytes, bytes);
+    }
+
+    // wireBytes differs from bytes when the payload is compressed on the wire; bytes always counts file bytes
+    Transfer register(String fileName, String client, long expectedBytes, AtomicLong bytes, AtomicLong wireBytes) {
+        Transfer transfer = new Transfer(nextId.incrementAndGet(), fileName, client, expectedBytes, bytes, wireBytes);
+        activeTransfers.put(transfer.id, transfer);
+        return transfer;
+    }
+
+    private void finish(Transfer transfer) {
+        if (activeTransfers.remove(transfer.id) == null) return;
+        completedBytesPerClient.computeIfAbsent(transfer.client, client -> new AtomicLong()).addAndGet(transfer.bytes.get());
+    }
+
+    private void sample() {
+        long now = System.nanoTime();
+        List<TransferSnapshot> transfers = new ArrayList<>();
+        Map<String, Long> bytesPerClient = new HashMap<>();
+        double aggregateMBps = 0.0;
+
+        completedBytesPerClient.forEach((client, bytes) -> bytesPerClient.put(client, bytes.get()));
+        for (Transfer transfer : activeTransfers.values()) {
+            TransferSnapshot snapshot = transfer.sample(now);
+            transfers.add(snapshot);
+            aggregateMBps += snapshot.getEwmaMBps();
+            bytesPerClient.merge(snapshot.getClient(), snapshot.getBytes(), Long::sum);
+        }
+
+        MetricsSnapshot snapshot = new MetricsSnapshot(System.currentTimeMillis(), List.copyOf(transfers),
+                aggregateMBps, Map.copyOf(bytesPerClient));
+        lastSnapshot = snapshot;
+        for (Consumer<MetricsSnapshot> listener : listeners) {
+            try {
+                listener.accept(snapshot);
+            } catch (RuntimeException e) {
+                System.err.println("Metrics listener failed: " + e.getMessage());
+            }
+        }
+    }
+
+    // Handle held by the code moving the bytes; sampling state is touched only by the sampler thread
+    class Transfer implements AutoCloseable {
+        private final long id;
+        private final String fileName;
+        private final String client;
+        private final long expectedBytes;
+        private final AtomicLong bytes;
+        private final AtomicLong wireBytes;
+        private final long startNanos = System.nanoTime();
+        private long lastNanos = startNanos;
+        private long lastBytes;
+        private double ewmaBytesPerSecond = -1;
+
+        private Transfer(long id, String fileName, String client, long expectedBytes, AtomicLong bytes, AtomicLong wireBytes) {
+            this.id = id;
+            this.fileName = fileName;
+            this.client = client;
+            this.expectedBytes = expectedBytes;
+            this.bytes = bytes;
+            this.wireBytes = wireBytes;
+            this.lastBytes = bytes.get();
+        }
+
+        long getId() {
+            return id;
+        }
+
+        private TransferSnapshot sample(long now) {
+            long currentBytes = bytes.get();
+            long currentWireBytes = wireBytes.get();
+            double elapsed = (now - lastNanos) / 1e9;
+            double totalElapsed = (now - startNanos) / 1e9;
+
+            double instantaneous = elapsed <= 0 ? 0.0 : (currentBytes - lastBytes) / elapsed;
+            ewmaBytesPerSecond = ewmaBytesPerSecond < 0 ? instantaneous
+                    : Constants.METRICS_EWMA_ALPHA * instantaneous + (1 - Constants.METRICS_EWMA_ALPHA) * ewmaBytesPerSecond;
+            double average = totalElapsed <= 0 ? 0.0 : currentBytes / totalElapsed;
+            double wireAverage = totalElapsed <= 0 ? 0.0 : currentWireBytes / totalElapsed;
+            double eta = expectedBytes < 0 || ewmaBytesPerSecond <= 0 ? -1
+                    : Math.max(0, expectedBytes - currentBytes) / ewmaBytesPerSecond;
+
+            lastNanos = now;
+            lastBytes = currentBytes;
+            return new TransferSnapshot(id, fileName, client, currentBytes, currentWireBytes, expectedBytes,
+                    instantaneous / Constants.BYTES_TO_MEGABYTES_DIVISOR,
+                    ewmaBytesPerSecond / Constants.BYTES_TO_MEGABYTES_DIVISOR,
+                    average / Constants.BYTES_TO_MEGABYTES_DIVISOR,
+                    wireAverage / Constants.BYTES_TO_MEGABYTES_DIVISOR, eta);
+        }
+
+        @Override
+        public void close() {
+            finish(this);
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package nets.labs.lab2.server;
+
+import lombok.Value;
+
+@Value
+public class TransferSnapshot {
+    long id;
+    String fileName;
+    String client;
+    // File bytes; speeds and ETA are computed from these, so they show effective throughput
+    long bytes;
+    // Bytes actually read from the socket, fewer than bytes when the upload is compressed
+    long wireBytes;
+    long expectedBytes;
+    double instantaneousMBps;
+    double ewmaMBps;
+    double averageMBps;
+    double averageWireMBps;
+    // Negative when the rate or the expected size is unknown
+    double etaSeconds;
+}
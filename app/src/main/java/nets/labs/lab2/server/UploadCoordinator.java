@@ -0,0 +1,270 @@
+package nets.labs.lab2.server;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Uploads are received into a private temp file and renamed over the target only once complete,
+// so readers see the old file or the new one but never a half-written mix.
+// Same-name uploads meet in a striped table: a lock is held only to claim a name or to rename, never while receiving.
+// Locks that may be held across file I/O or a wait for a writer slot are ReentrantLocks rather than monitors,
+// so a virtual thread blocked on them does not pin its carrier.
+class UploadCoordinator {
+    private static final String TEMP_PREFIX = "upload-";
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    private final ConflictPolicy policy;
+    private final UploadStorage storage;
+    private final Stripe[] stripes = new Stripe[Constants.UPLOAD_LOCK_STRIPES];
+
+    UploadCoordinator(ServerConfig config, UploadStorage storage) {
+        this.policy = config.getConflictPolicy();
+        this.storage = storage;
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new Stripe();
+        }
+    }
+
+    // Claims fileName for one upload that writes into a fresh temp file on the name's storage device
+    PendingUpload begin(String fileName) throws IOException {
+        PendingUpload upload = claim(fileName, null);
+        try {
+            upload.tempFile = createTempFile(upload.device);
+        } catch (IOException e) {
+            upload.abort();
+            throw e;
+        }
+        return upload;
+    }
+
+    // Claims fileName for an upload that already has its data on the name's device, e.g. a resumable upload's
+    // partial file; abort leaves that file alone
+    PendingUpload adopt(String fileName, File dataFile) throws IOException {
+        return claim(fileName, dataFile);
+    }
+
+    private PendingUpload claim(String fileName, File dataFile) throws IOException {
+        File targetFile = storage.resolve(fileName);
+        String key = targetFile.getCanonicalPath();
+        Stripe stripe = stripeOf(key);
+        stripe.lock.lock();
+        try {
+            if (policy == ConflictPolicy.REJECT && stripe.inFlight.containsKey(key)) {
+                throw new IOException("File '" + fileName + "' is already being uploaded");
+            }
+            stripe.inFlight.merge(key, 1, Integer::sum);
+        } finally {
+            stripe.lock.unlock();
+        }
+        return new PendingUpload(fileName, targetFile, storage.deviceFor(fileName), key, dataFile);
+    }
+
+    private static File copyToDevice(File source, StorageDevice device) throws IOException {
+        File copy = createTempFile(device);
+        try {
+            Files.copy(source.toPath(), copy.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            return copy;
+        } catch (IOException e) {
+            copy.delete();
+            throw e;
+        }
+    }
+
+    // Temp files left behind by a crash; a storage root belongs to one server, so at startup none of them is in use
+    void sweepIncoming() {
+        int removed = 0;
+        for (StorageDevice device : storage.devices()) {
+            File[] orphans = device.getIncomingDir().listFiles((dir, name) -> name.startsWith(TEMP_PREFIX) && name.endsWith(TEMP_SUFFIX));
+            if (orphans == null) continue;
+            for (File orphan : orphans) {
+                if (orphan.delete()) removed++;
+            }
+        }
+        if (removed > 0) System.out.println("Removed " + removed + " orphaned temp files from " + Constants.INCOMING_DIR_NAME);
+    }
+
+    private static File createTempFile(StorageDevice device) throws IOException {
+        device.getIncomingDir().mkdirs();
+        return Files.createTempFile(device.getIncomingDir().toPath(), TEMP_PREFIX, TEMP_SUFFIX).toFile();
+    }
+
+    private Stripe stripeOf(String key) {
+        int hash = key.hashCode();
+        return stripes[(hash ^ (hash >>> 16)) & (stripes.length - 1)];
+    }
+
+    private void release(String key) {
+        Stripe stripe = stripeOf(key);
+        stripe.lock.lock();
+        try {
+            stripe.inFlight.computeIfPresent(key, (ignored, count) -> count == 1 ? null : count - 1);
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    // "dir/report.txt" -> "dir/report (2).txt"
+    private static String versionedName(String fileName, int version) {
+        int nameStart = fileName.lastIndexOf('/') + 1;
+        int dot = fileName.lastIndexOf('.');
+        if (dot <= nameStart) return fileName + " (" + version + ")";
+        return fileName.substring(0, dot) + " (" + version + ")" + fileName.substring(dot);
+    }
+
+    private static class Stripe {
+        // Held across the rename in publish
+        private final ReentrantLock lock = new ReentrantLock();
+        // Uploads currently receiving into each canonical target path
+        private final Map<String, Integer> inFlight = new HashMap<>();
+    }
+
+    class PendingUpload {
+        private final String fileName;
+        private final File targetFile;
+        private final StorageDevice device;
+        private final String key;
+        private final boolean ownsTempFile;
+        // Serializes schedule callers while one waits for a slot; publish and abort never take it
+        private final ReentrantLock scheduleLock = new ReentrantLock();
+        private File tempFile;
+        private String storedName;
+        // Guarded by this; the monitor is only held to flip them, never across I/O or a wait
+        private boolean finished;
+        private boolean scheduled;
+
+        private PendingUpload(String fileName, File targetFile, StorageDevice device, String key, File dataFile) {
+            this.fileName = fileName;
+            this.targetFile = targetFile;
+            this.device = device;
+            this.key = key;
+            this.ownsTempFile = dataFile == null;
+            this.tempFile = dataFile;
+        }
+
+        File getTempFile() {
+            return tempFile;
+        }
+
+        // Device the data is written to; writes go through its scheduler
+        StorageDevice getDevice() {
+            return device;
+        }
+
+        // The name publish stored the upload under, like fileName relative to the storage root
+        String getStoredName() {
+            return storedName;
+        }
+
+        // Takes one of the device's writer slots until publish or abort; blocking engines call it before the payload.
+        // Safe to call from every stream of a chunked upload, only the first one waits.
+        void schedule() throws IOException {
+            scheduleLock.lock();
+            try {
+                synchronized (this) {
+                    if (scheduled) return;
+                    if (finished) throw new IOException("Upload of '" + fileName + "' already finished");
+                }
+                device.acquireSlot();
+                boolean aborted;
+                synchronized (this) {
+                    aborted = finished;
+                    if (!aborted) scheduled = true;
+                }
+                if (aborted) {
+                    device.releaseSlot();
+                    throw new IOException("Upload of '" + fileName + "' was aborted while waiting for a write slot");
+                }
+            } finally {
+                scheduleLock.unlock();
+            }
+        }
+
+        // Marks the upload finished; false if publish or abort already did
+        private synchronized boolean finish() {
+            if (finished) return false;
+            finished = true;
+            return true;
+        }
+
+        private void releaseSlot() {
+            boolean held;
+            synchronized (this) {
+                held = scheduled;
+                scheduled = false;
+            }
+            if (held) device.releaseSlot();
+        }
+
+        // Renames the received data into place and returns the stored file; callers still commit it for durability
+        File publish() throws IOException {
+            if (!finish()) throw new IllegalStateException("Upload of '" + fileName + "' already finished");
+            File dataFile = tempFile;
+            try {
+                String name = fileName;
+                File published = targetFile;
+                if (policy == ConflictPolicy.VERSION_SUFFIX) {
+                    StorageDevice dataDevice = device;
+                    for (int version = 1; ; version++) {
+                        if (!published.exists()) {
+                            // A versioned name may hash to another device and a rename cannot cross filesystems.
+                            // The copy runs before the lock, so a large file blocks no other name in the stripe.
+                            StorageDevice publishedDevice = storage.deviceFor(name);
+                            if (publishedDevice != dataDevice) {
+                                File copy = copyToDevice(dataFile, publishedDevice);
+                                dataFile.delete();
+                                dataFile = copy;
+                                dataDevice = publishedDevice;
+                            }
+                            // Lock the name being published, not the uploaded one: a literal upload of "name (1).ext"
+                            // renames under the same stripe, so the check and the rename cannot interleave with it
+                            ReentrantLock lock = stripeOf(published.getCanonicalPath()).lock;
+                            lock.lock();
+                            try {
+                                if (!published.exists()) {
+                                    published.getAbsoluteFile().getParentFile().mkdirs();
+                                    // No REPLACE_EXISTING: the name was checked free under this lock
+                                    Files.move(dataFile.toPath(), published.toPath(), StandardCopyOption.ATOMIC_MOVE);
+                                    break;
+                                }
+                            } finally {
+                                lock.unlock();
+                            }
+                        }
+                        name = versionedName(fileName, version);
+                        published = storage.resolve(name);
+                    }
+                } else {
+                    ReentrantLock lock = stripeOf(key).lock;
+                    lock.lock();
+                    try {
+                        published.getAbsoluteFile().getParentFile().mkdirs();
+                        Files.move(dataFile.toPath(), published.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                    } finally {
+                        lock.unlock();
+                    }
+                }
+                storedName = name;
+                if (published != targetFile) System.out.println("File '" + fileName + "' already exists, stored as '" + name + "'");
+                return published;
+            } catch (IOException e) {
+                if (ownsTempFile || dataFile != tempFile) dataFile.delete();
+                throw e;
+            } finally {
+                releaseSlot();
+                release(key);
+            }
+        }
+
+        // Drops the received data unless publish already ran; safe to call more than once and from any thread
+        void abort() {
+            if (!finish()) return;
+            if (ownsTempFile && tempFile != null) tempFile.delete();
+            releaseSlot();
+            release(key);
+        }
+    }
+}
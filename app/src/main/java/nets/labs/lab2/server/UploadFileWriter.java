@@ -0,0 +1,130 @@
+package nets.labs.lab2.server;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+// Destination of one upload; preallocating modes size the file from the header and trim it back if the upload ends short
+abstract class UploadFileWriter implements AutoCloseable {
+    protected final FileChannel fileChannel;
+    protected final long fileSize;
+    protected long position;
+    private StorageDevice device;
+    private long syncIntervalBytes;
+    private long syncedPosition;
+
+    private UploadFileWriter(FileChannel fileChannel, long fileSize) {
+        this.fileChannel = fileChannel;
+        this.fileSize = fileSize;
+    }
+
+    // syncIntervalBytes > 0 forces the written data to disk every that many bytes
+    static UploadFileWriter open(File targetFile, StorageDevice device, long fileSize, ServerConfig config, long syncIntervalBytes) throws IOException {
+        WriteMode mode = fileSize < config.getPreallocateThresholdBytes() ? WriteMode.STREAM : config.getWriteMode();
+        UploadFileWriter writer = switch (mode) {
+            case STREAM -> new StreamWriter(FileChannel.open(targetFile.toPath(),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING), fileSize);
+            case POSITIONAL -> new PositionalWriter(preallocate(targetFile, fileSize), fileSize);
+            case MAPPED -> new MappedWriter(preallocate(targetFile, fileSize), fileSize, config.getWriteWindowBytes());
+        };
+        writer.device = device;
+        writer.syncIntervalBytes = syncIntervalBytes;
+        return writer;
+    }
+
+    // Java has no fallocate: setLength reserves the size as a hole, so the filesystem can allocate
+    // extents in large runs at writeback instead of extending the file on every write
+    private static FileChannel preallocate(File targetFile, long fileSize) throws IOException {
+        RandomAccessFile file = new RandomAccessFile(targetFile, "rw");
+        try {
+            // Drop old contents first, otherwise mapped pages would be read back from disk before being overwritten
+            file.setLength(0);
+            file.setLength(fileSize);
+            return file.getChannel();
+        } catch (IOException e) {
+            file.close();
+            throw e;
+        }
+    }
+
+    // Consumes the remaining bytes of data
+    void write(ByteBuffer data) throws IOException {
+        device.write(() -> {
+            long start = position;
+            writeData(data);
+            if (syncIntervalBytes > 0 && position - syncedPosition >= syncIntervalBytes) {
+                fileChannel.force(false);
+                syncedPosition = position;
+            }
+            return position - start;
+        });
+    }
+
+    protected abstract void writeData(ByteBuffer data) throws IOException;
+
+    @Override
+    public void close() throws IOException {
+        try {
+            if (position < fileSize && fileChannel.size() > position) fileChannel.truncate(position);
+        } finally {
+            fileChannel.close();
+        }
+    }
+
+    private static class StreamWriter extends UploadFileWriter {
+        private StreamWriter(FileChannel fileChannel, long fileSize) {
+            super(fileChannel, fileSize);
+        }
+
+        @Override
+        protected void writeData(ByteBuffer data) throws IOException {
+            while (data.hasRemaining()) {
+                position += fileChannel.write(data);
+            }
+        }
+    }
+
+    private static class PositionalWriter extends UploadFileWriter {
+        private PositionalWriter(FileChannel fileChannel, long fileSize) {
+            super(fileChannel, fileSize);
+        }
+
+        @Override
+        protected void writeData(ByteBuffer data) throws IOException {
+            if (data.remaining() > fileSize - position) throw new IOException("More data than declared size " + fileSize);
+            while (data.hasRemaining()) {
+                position += fileChannel.write(data, position);
+            }
+        }
+    }
+
+    // Copies straight into the page cache; no write syscall per receive buffer, one map call per window
+    private static class MappedWriter extends UploadFileWriter {
+        private final int windowBytes;
+        private MappedByteBuffer window;
+
+        private MappedWriter(FileChannel fileChannel, long fileSize, int windowBytes) {
+            super(fileChannel, fileSize);
+            this.windowBytes = windowBytes;
+        }
+
+        @Override
+        protected void writeData(ByteBuffer data) throws IOException {
+            if (data.remaining() > fileSize - position) throw new IOException("More data than declared size " + fileSize);
+            while (data.hasRemaining()) {
+                if (window == null || !window.hasRemaining()) {
+                    // Old windows are unmapped by the GC; the pages stay in the page cache either way
+                    window = fileChannel.map(FileChannel.MapMode.READ_WRITE, position, Math.min(windowBytes, fileSize - position));
+                }
+                int bytes = Math.min(window.remaining(), data.remaining());
+                window.put(data.slice(data.position(), bytes));
+                data.position(data.position() + bytes);
+                position += bytes;
+            }
+        }
+    }
+}
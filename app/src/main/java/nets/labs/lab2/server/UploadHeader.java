@@ -0,0 +1,38 @@
+package nets.labs.lab2.server;
+
+import lombok.Getter;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+// Header of a plain v1 upload or a REQUEST_UPLOAD, read after the leading int that told the two apart:
+// name, file size and, for REQUEST_UPLOAD, the options
+@Getter
+class UploadHeader {
+    private final String fileName;
+    private final long fileSize;
+    private final UploadOptions options;
+
+    private UploadHeader(String fileName, long fileSize, UploadOptions options) {
+        this.fileName = fileName;
+        this.fileSize = fileSize;
+        this.options = options;
+    }
+
+    static UploadHeader read(DataInputStream input, int fileNameLength, boolean withOptions) throws IOException {
+        String fileName = readFileName(input, fileNameLength);
+        long fileSize = input.readLong();
+        if (fileSize < 0) throw new IllegalArgumentException("Invalid file size: " + fileSize);
+        UploadOptions options = withOptions ? UploadOptions.read(input) : UploadOptions.defaults();
+        return new UploadHeader(fileName, fileSize, options);
+    }
+
+    static String readFileName(DataInputStream input, int fileNameLength) throws IOException {
+        FileValidator.validateFileNameLength(fileNameLength);
+
+        byte[] fileNameBytes = new byte[fileNameLength];
+        input.readFully(fileNameBytes);
+        return new String(fileNameBytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,96 @@
+package nets.labs.lab2.server;
+
+import lombok.Getter;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Durable record of how much of a resumable upload is safely on disk.
+// One connection at a time may hold a journal; close releases it for the next attempt.
+class UploadJournal implements Closeable {
+    private static final Set<String> openJournals = ConcurrentHashMap.newKeySet();
+
+    private final long transferId;
+    private final String fileName;
+    private final long fileSize;
+    private final File journalFile;
+    @Getter
+    private final File partialFile;
+    @Getter
+    private long confirmedOffset;
+
+    private UploadJournal(File partialDir, long transferId, String fileName, long fileSize) {
+        this.transferId = transferId;
+        this.fileName = fileName;
+        this.fileSize = fileSize;
+        // The name is hashed so the key never has to be a valid path component
+        String key = Long.toHexString(transferId) + "-" + fileSize + "-" + Integer.toHexString(fileName.hashCode());
+        this.journalFile = new File(partialDir, key + ".journal");
+        this.partialFile = new File(partialDir, key + ".part");
+    }
+
+    // partialDir must be on the filesystem the finished file is renamed into
+    static UploadJournal open(File partialDir, long transferId, String fileName, long fileSize) throws IOException {
+        partialDir.mkdirs();
+        UploadJournal journal = new UploadJournal(partialDir, transferId, fileName, fileSize);
+        // Two RESUMEs of the same transfer would truncate and append to the same partial file
+        if (!openJournals.add(journal.journalFile.getAbsolutePath())) {
+            throw new IOException("Transfer " + transferId + " is already being resumed on another connection");
+        }
+        try {
+            journal.load();
+        } catch (IOException e) {
+            journal.close();
+            throw e;
+        }
+        return journal;
+    }
+
+    private void load() throws IOException {
+        if (!journalFile.isFile() || !partialFile.isFile()) return;
+
+        try (DataInputStream input = new DataInputStream(new FileInputStream(journalFile))) {
+            long storedTransferId = input.readLong();
+            String storedFileName = input.readUTF();
+            long storedFileSize = input.readLong();
+            long storedOffset = input.readLong();
+
+            boolean matches = storedTransferId == transferId && storedFileName.equals(fileName) && storedFileSize == fileSize;
+            if (matches && storedOffset >= 0 && storedOffset <= fileSize && storedOffset <= partialFile.length()) {
+                confirmedOffset = storedOffset;
+            }
+        } catch (IOException e) {
+            // Torn or garbled journal: start over from the beginning
+            confirmedOffset = 0;
+        }
+    }
+
+    // Callers must force the partial file before confirming, otherwise the offset may outlive the data
+    void confirm(long offset) throws IOException {
+        File tempFile = new File(journalFile.getPath() + ".tmp");
+        try (FileOutputStream fos = new FileOutputStream(tempFile);
+             DataOutputStream output = new DataOutputStream(new BufferedOutputStream(fos))) {
+            output.writeLong(transferId);
+            output.writeUTF(fileName);
+            output.writeLong(fileSize);
+            output.writeLong(offset);
+            output.flush();
+            fos.getFD().sync();
+        }
+        Files.move(tempFile.toPath(), journalFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        confirmedOffset = offset;
+    }
+
+    // Called once the partial file has been renamed into place
+    void complete() {
+        journalFile.delete();
+    }
+
+    @Override
+    public void close() {
+        openJournals.remove(journalFile.getAbsolutePath());
+    }
+}
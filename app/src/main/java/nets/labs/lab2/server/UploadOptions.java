@@ -0,0 +1,35 @@
+package nets.labs.lab2.server;
+
+import lombok.Getter;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+
+// Options of a REQUEST_UPLOAD: a count followed by (option id, value) byte pairs
+@Getter
+class UploadOptions {
+    private ChecksumType checksumType = ChecksumType.NONE;
+    private CompressionType compressionType = CompressionType.NONE;
+    // Stream RESPONSE_PROGRESS frames to the client while receiving
+    private boolean progress;
+
+    static UploadOptions defaults() {
+        return new UploadOptions();
+    }
+
+    static UploadOptions read(DataInputStream input) throws IOException {
+        UploadOptions options = new UploadOptions();
+        int optionCount = input.readUnsignedByte();
+        for (int i = 0; i < optionCount; i++) {
+            byte option = input.readByte();
+            byte value = input.readByte();
+            switch (option) {
+                case Constants.OPTION_CHECKSUM -> options.checksumType = ChecksumType.fromId(value);
+                case Constants.OPTION_COMPRESSION -> options.compressionType = CompressionType.fromId(value);
+                case Constants.OPTION_PROGRESS -> options.progress = value != 0;
+                default -> throw new IOException("Unknown upload option: " + option);
+            }
+        }
+        return options;
+    }
+}
@@ -0,0 +1,15 @@
+package nets.labs.lab2.server;
+
+import java.io.IOException;
+
+public interface UploadServer {
+    void start(int port) throws IOException;
+
+    void stop() throws IOException;
+
+    TransferMetrics getMetrics();
+
+    BufferPool getBufferPool();
+
+    UploadStorage getStorage();
+}
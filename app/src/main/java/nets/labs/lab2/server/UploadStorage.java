@@ -0,0 +1,66 @@
+package nets.labs.lab2.server;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+// Maps upload names to files. The name's hash picks one of the configured roots and, with shardDepth > 0,
+// nested two-hex-digit directories below it, so no directory grows past a few thousand entries.
+// The mapping depends on the root count: adding a root moves names to other roots and needs an offline migration.
+public class UploadStorage {
+    private final List<StorageDevice> devices = new ArrayList<>();
+    private final int shardDepth;
+
+    UploadStorage(ServerConfig config) {
+        if (config.getStorageRoots().isEmpty()) throw new IllegalArgumentException("At least one storage root is required");
+        if (config.getShardDepth() < 0 || config.getShardDepth() > Constants.MAX_SHARD_DEPTH) {
+            throw new IllegalArgumentException("Shard depth must be between 0 and " + Constants.MAX_SHARD_DEPTH + ": " + config.getShardDepth());
+        }
+        for (String root : config.getStorageRoots()) {
+            devices.add(new StorageDevice(new File(root), config.getMaxWritersPerDevice()));
+        }
+        this.shardDepth = config.getShardDepth();
+    }
+
+    StorageDevice deviceFor(String fileName) {
+        return devices.get(Integer.remainderUnsigned(hash(fileName), devices.size()));
+    }
+
+    // Where fileName is stored; the name must not escape its shard directory
+    File resolve(String fileName) throws IOException {
+        int hash = hash(fileName);
+        File directory = deviceFor(fileName).getRoot();
+        for (int level = 0; level < shardDepth; level++) {
+            // Byte 0 already picked the root when the root count is a power of two, so shards use the next bytes
+            directory = new File(directory, String.format("%02x", (hash >>> (8 * (level + 1))) & 0xFF));
+        }
+        File file = new File(directory, fileName);
+        FileValidator.validateFileName(directory, file, fileName);
+        return file;
+    }
+
+    List<StorageDevice> devices() {
+        return Collections.unmodifiableList(devices);
+    }
+
+    public List<StorageDeviceStats> stats() {
+        List<StorageDeviceStats> stats = new ArrayList<>(devices.size());
+        for (StorageDevice device : devices) {
+            stats.add(device.stats());
+        }
+        return stats;
+    }
+
+    // String.hashCode is specified, so the layout is stable across restarts; the finalizer spreads similar names
+    private static int hash(String fileName) {
+        int hash = fileName.hashCode();
+        hash ^= hash >>> 16;
+        hash *= 0x85ebca6b;
+        hash ^= hash >>> 13;
+        hash *= 0xc2b2ae35;
+        hash ^= hash >>> 16;
+        return hash;
+    }
+}
@@ -0,0 +1,11 @@
+package nets.labs.lab2.server;
+
+// How ClientHandler lands an upload whose size is known from the header
+public enum WriteMode {
+    // Sequential channel writes that grow the file as data arrives
+    STREAM,
+    // File sized up front, then written with positional FileChannel writes
+    POSITIONAL,
+    // File sized up front, then filled through sliding MappedByteBuffer windows
+    MAPPED
+}